@@ -22,6 +22,7 @@ import java.awt.Window;
 import java.awt.event.WindowEvent;
 import javax.swing.JComboBox;
 import javax.swing.JFrame;
+import javax.swing.JTextField;
 
 public abstract class AbstractLoginHandler implements WindowHandler {
     
@@ -71,7 +72,13 @@ public abstract class AbstractLoginHandler implements WindowHandler {
     protected abstract boolean setFields(Window window, int eventID) throws IBControllerException;
 
     protected final void setMissingCredential(final Window window, final int credentialIndex) {
-        SwingUtils.findTextField(window, credentialIndex).requestFocus();
+        final JTextField tf = SwingUtils.findTextField(window, credentialIndex);
+        GuiExecutor.instance().execute(new Runnable() {
+            @Override
+            public void run() {
+                tf.requestFocus();
+            }
+        });
     }
 
     protected final void setCredential(final Window window, 
@@ -93,11 +100,14 @@ public abstract class AbstractLoginHandler implements WindowHandler {
             if (tradingModeCombo != null ) {
                 String tradingMode = TradingModeManager.tradingModeManager().getTradingMode();
                 Utils.logToConsole("Setting Trading mode = " + tradingMode);
-                if (tradingMode.equalsIgnoreCase(TradingModeManager.TRADING_MODE_LIVE)) {
-                    tradingModeCombo.setSelectedItem("Live Trading");
-                } else {
-                    tradingModeCombo.setSelectedItem("Paper Trading");
-                }
+                final JComboBox<?> combo = tradingModeCombo;
+                final String item = tradingMode.equalsIgnoreCase(TradingModeManager.TRADING_MODE_LIVE) ? "Live Trading" : "Paper Trading";
+                GuiExecutor.instance().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        combo.setSelectedItem(item);
+                    }
+                });
             }
         }
     }
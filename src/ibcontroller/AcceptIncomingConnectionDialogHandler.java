@@ -57,6 +57,10 @@ class AcceptIncomingConnectionDialogHandler implements WindowHandler {
         }
     }
 
+    public WindowHandlerHints getHints() {
+        return WindowHandlerHints.forDialogs().onEvents(WindowEvent.WINDOW_OPENED);
+    }
+
     public boolean recogniseWindow(Window window) {
         if (! (window instanceof JDialog)) return false;
 
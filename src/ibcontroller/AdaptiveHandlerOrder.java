@@ -0,0 +1,210 @@
+// This file is part of the "IBController".
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2016 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBController is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBController is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBController.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package ibcontroller;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Learns which window handlers recognise windows most often and most 
+ * cheaply, and orders the handlers so that those are tried first (see the 
+ * WindowHandlerOrdering setting).
+ * 
+ * Handlers are ordered by the number of windows they have recognised per 
+ * unit of time spent in recogniseWindow(), which minimises the expected 
+ * time to find the right handler. Pinned handlers (see 
+ * WindowHandlerHints.pinned()) never move, and no handler is moved past a 
+ * pinned one, so handlers are only reordered within the runs between pinned
+ * handlers.
+ * 
+ * The statistics for the current session are those gathered by 
+ * WindowHandlerMetrics. They are added to those from previous sessions and
+ * saved to a file, so that the learned order is used from the start of the
+ * next session.
+ */
+class AdaptiveHandlerOrder {
+
+    /*
+     * Each handler is treated as though it had already been tried once, 
+     * taking this long, and recognised one window: this stops the order 
+     * being decided by the first few observations.
+     */
+    private static final long PRIOR_NANOS = 1000000;
+
+    private static final class SavedStatistics {
+        long calls;
+        long hits;
+        long nanos;
+    }
+
+    private final List<WindowHandler> handlers;
+    private final Map<WindowHandler, SavedStatistics> savedStatistics = new IdentityHashMap<>();
+    private final Map<WindowHandler, String> keys;
+    private final Path file;
+
+    private volatile List<WindowHandler> currentOrder;
+
+    /**
+     * Creates an ordering for the specified handlers, loading any statistics 
+     * saved in a previous session.
+     * @param handlers
+     * the handlers, in their default order
+     * @param file
+     * the file in which the statistics are saved, or null if they are not
+     * to be saved
+     */
+    AdaptiveHandlerOrder(List<WindowHandler> handlers, Path file) {
+        this.handlers = new ArrayList<>(handlers);
+        this.file = file;
+
+        keys = WindowHandlerIndex.getHandlerKeys(handlers);
+        for (WindowHandler handler : handlers) savedStatistics.put(handler, new SavedStatistics());
+
+        load();
+        currentOrder = computeOrder();
+    }
+
+    /**
+     * Returns the handlers in the order in which they should currently be 
+     * tried.
+     */
+    List<WindowHandler> getOrder() {
+        return currentOrder;
+    }
+
+    /**
+     * Recomputes the order from the statistics gathered so far, and saves 
+     * the statistics.
+     * @return
+     * true if the order has changed; otherwise false
+     */
+    boolean reorder() {
+        List<WindowHandler> newOrder = computeOrder();
+        save();
+        if (newOrder.equals(currentOrder)) return false;
+        currentOrder = newOrder;
+        return true;
+    }
+
+    private List<WindowHandler> computeOrder() {
+        final Map<WindowHandler, Double> scores = new IdentityHashMap<>();
+        for (WindowHandler handler : handlers) scores.put(handler, score(handler));
+
+        Comparator<WindowHandler> byScore = new Comparator<WindowHandler>() {
+            @Override
+            public int compare(WindowHandler a, WindowHandler b) {
+                return Double.compare(scores.get(b), scores.get(a));
+            }
+        };
+
+        List<WindowHandler> order = new ArrayList<>(handlers.size());
+        List<WindowHandler> run = new ArrayList<>();
+        for (WindowHandler handler : handlers) {
+            if (handler.getHints().isPinned()) {
+                Collections.sort(run, byScore);
+                order.addAll(run);
+                run.clear();
+                order.add(handler);
+            } else {
+                run.add(handler);
+            }
+        }
+        Collections.sort(run, byScore);
+        order.addAll(run);
+        return Collections.unmodifiableList(order);
+    }
+
+    private double score(WindowHandler handler) {
+        SavedStatistics saved = savedStatistics.get(handler);
+        WindowHandlerMetrics metrics = WindowHandlerMetrics.getInstance();
+        return (saved.hits + metrics.getMatchCount(handler) + 1.0) / 
+                (saved.nanos + metrics.getRecognitionNanos(handler) + PRIOR_NANOS);
+    }
+
+    private void load() {
+        if (file == null || !Files.exists(file)) return;
+
+        Map<String, WindowHandler> handlersByKey = new HashMap<>();
+        for (Map.Entry<WindowHandler, String> entry : keys.entrySet()) handlersByKey.put(entry.getValue(), entry.getKey());
+
+        try {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] fields = line.split("\t");
+                if (fields.length != 4) throw new IOException("invalid line: " + line);
+                WindowHandler handler = handlersByKey.get(fields[0]);
+                if (handler == null) continue;
+                SavedStatistics saved = savedStatistics.get(handler);
+                saved.calls = Long.parseLong(fields[1]);
+                saved.hits = Long.parseLong(fields[2]);
+                saved.nanos = Long.parseLong(fields[3]);
+            }
+            Utils.logToConsole("loaded window handler statistics from " + file);
+        } catch (IOException | NumberFormatException e) {
+            Utils.logError("could not load window handler statistics from " + file + ": " + e.getMessage());
+            for (WindowHandler handler : handlers) savedStatistics.put(handler, new SavedStatistics());
+        }
+    }
+
+    private void save() {
+        if (file == null) return;
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                writer.write("# handler\tcalls\thits\tnanos");
+                writer.newLine();
+                WindowHandlerMetrics metrics = WindowHandlerMetrics.getInstance();
+                for (WindowHandler handler : handlers) {
+                    SavedStatistics saved = savedStatistics.get(handler);
+                    writer.write(keys.get(handler) + 
+                            "\t" + (saved.calls + metrics.getRecognitionCount(handler)) + 
+                            "\t" + (saved.hits + metrics.getMatchCount(handler)) + 
+                            "\t" + (saved.nanos + metrics.getRecognitionNanos(handler)));
+                    writer.newLine();
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Utils.logError("could not save window handler statistics to " + file + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (WindowHandler handler : currentOrder) {
+            if (sb.length() != 0) sb.append(", ");
+            sb.append(keys.get(handler));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,208 @@
+// This file is part of the "IBController".
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2016 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBController is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBController is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBController.  If not, see <http://www.gnu.org/licenses/>.
+
+package ibcontroller;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Decides whether IBControllerServer accepts a connection from a given address,
+ * according to the IbControlFrom setting.
+ * 
+ * IbControlFrom is a comma separated list whose entries may be IPv4 or IPv6 
+ * addresses, CIDR blocks (eg 10.1.0.0/16 or fd00::/8), or host names. 
+ * Addresses and CIDR blocks are compiled into a binary prefix trie, so checking
+ * an address never involves more than 32 (IPv4) or 128 (IPv6) steps. Host names 
+ * are resolved to addresses when the filter is created and then periodically 
+ * in the background (every IbControlFromDnsRefresh seconds), so no DNS lookup
+ * is ever done while a connection is being accepted.
+ * 
+ * Connections from the loopback address are always allowed.
+ */
+class AddressFilter {
+
+    // matches strings that can only be a literal address, so that 
+    // InetAddress.getByName() won't attempt a DNS lookup
+    private static final Pattern IPV4_LITERAL = Pattern.compile("\\d{1,3}(\\.\\d{1,3}){3}");
+    private static final Pattern IPV6_LITERAL = Pattern.compile("[0-9a-fA-F:.]*:[0-9a-fA-F:.]*");
+
+    private static AddressFilter _Instance;
+
+    private final PrefixTrie addressTrie = new PrefixTrie();
+    private final List<String> hostNames = new ArrayList<>();
+    private volatile PrefixTrie hostTrie = new PrefixTrie();
+
+    private AddressFilter(String allowedAddresses) {
+        for (String entry : allowedAddresses.split(",")) {
+            entry = entry.trim();
+            if (entry.isEmpty()) continue;
+            try {
+                addEntry(entry);
+            } catch (IBControllerException e) {
+                Utils.logError("the IbControlFrom setting is invalid: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Creates a filter from the IbControlFrom setting.
+     * 
+     * Any host names in the setting are resolved before this method returns. 
+     * If the list contains host names, and the IbControlFromDnsRefresh setting is
+     * greater than zero, they are then re-resolved at that interval (in seconds)
+     * so that changes in DNS are picked up.
+     * 
+     * The filter is only created once: subsequent calls return the same filter.
+     * @return
+     * the filter
+     */
+    static synchronized AddressFilter fromSettings() {
+        if (_Instance != null) return _Instance;
+
+        final AddressFilter filter = new AddressFilter(Settings.settings().getString("IbControlFrom", ""));
+        _Instance = filter;
+        if (filter.hostNames.isEmpty()) return filter;
+
+        filter.resolveHostNames();
+        int refreshInterval = Settings.settings().getInt("IbControlFromDnsRefresh", 300);
+        if (refreshInterval > 0) {
+            MyScheduledExecutorService.getInstance().scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    filter.resolveHostNames();
+                }
+            }, refreshInterval, refreshInterval, TimeUnit.SECONDS);
+        }
+        return filter;
+    }
+
+    /**
+     * Indicates whether connections are allowed from the specified address.
+     * @param address
+     * the client's address
+     * @return
+     * true if the address is allowed; otherwise false
+     */
+    boolean isAllowed(InetAddress address) {
+        if (address.isLoopbackAddress()) return true;
+        byte[] bytes = address.getAddress();
+        return addressTrie.matches(bytes) || hostTrie.matches(bytes);
+    }
+
+    private void addEntry(String entry) throws IBControllerException {
+        int slash = entry.indexOf('/');
+        if (slash < 0 && !isAddressLiteral(entry)) {
+            hostNames.add(entry);
+            return;
+        }
+
+        String addressPart = (slash < 0) ? entry : entry.substring(0, slash);
+        if (!isAddressLiteral(addressPart)) throw new IBControllerException("'" + entry + "' is not a valid CIDR block");
+        byte[] bytes = parseAddressLiteral(addressPart);
+
+        int prefixLength = bytes.length * 8;
+        if (slash >= 0) {
+            try {
+                prefixLength = Integer.parseInt(entry.substring(slash + 1));
+            } catch (NumberFormatException e) {
+                throw new IBControllerException("'" + entry + "' has an invalid prefix length");
+            }
+            if (prefixLength < 0 || prefixLength > bytes.length * 8) throw new IBControllerException("'" + entry + "' has an invalid prefix length");
+        }
+        addressTrie.add(bytes, prefixLength);
+    }
+
+    private static boolean isAddressLiteral(String s) {
+        return IPV4_LITERAL.matcher(s).matches() || IPV6_LITERAL.matcher(s).matches();
+    }
+
+    private static byte[] parseAddressLiteral(String s) throws IBControllerException {
+        try {
+            return InetAddress.getByName(s).getAddress();
+        } catch (UnknownHostException e) {
+            throw new IBControllerException("'" + s + "' is not a valid address");
+        }
+    }
+
+    private void resolveHostNames() {
+        PrefixTrie trie = new PrefixTrie();
+        for (String hostName : hostNames) {
+            try {
+                for (InetAddress address : InetAddress.getAllByName(hostName)) {
+                    byte[] bytes = address.getAddress();
+                    trie.add(bytes, bytes.length * 8);
+                }
+            } catch (UnknownHostException e) {
+                Utils.logToConsole("IBControllerServer could not resolve IbControlFrom host name: " + hostName);
+            }
+        }
+        hostTrie = trie;
+    }
+
+    /**
+     * A binary trie of address prefixes, with separate roots for IPv4
+     * and IPv6 addresses.
+     */
+    private static final class PrefixTrie {
+        private final Node ipv4Root = new Node();
+        private final Node ipv6Root = new Node();
+
+        void add(byte[] address, int prefixLength) {
+            Node node = root(address);
+            for (int i = 0; i < prefixLength; i++) {
+                if (node.terminal) return;      // already covered by a shorter prefix
+                int bit = bitAt(address, i);
+                if (node.children[bit] == null) node.children[bit] = new Node();
+                node = node.children[bit];
+            }
+            node.terminal = true;
+            node.children[0] = null;
+            node.children[1] = null;
+        }
+
+        boolean matches(byte[] address) {
+            Node node = root(address);
+            int length = address.length * 8;
+            for (int i = 0; ; i++) {
+                if (node.terminal) return true;
+                if (i == length) return false;
+                node = node.children[bitAt(address, i)];
+                if (node == null) return false;
+            }
+        }
+
+        private static int bitAt(byte[] address, int i) {
+            return (address[i >> 3] >> (7 - (i & 7))) & 1;
+        }
+
+        private Node root(byte[] address) {
+            return (address.length == 4) ? ipv4Root : ipv6Root;
+        }
+    }
+
+    private static final class Node {
+        final Node[] children = new Node[2];
+        boolean terminal;
+    }
+
+}
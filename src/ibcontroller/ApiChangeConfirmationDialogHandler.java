@@ -44,6 +44,11 @@ class ApiChangeConfirmationDialogHandler implements WindowHandler {
         }
     }
 
+    @Override
+    public WindowHandlerHints getHints() {
+        return WindowHandlerHints.forDialogs().onEvents(WindowEvent.WINDOW_OPENED);
+    }
+
     @Override
     public boolean recogniseWindow(Window window) {
         if (! (window instanceof JDialog)) return false;
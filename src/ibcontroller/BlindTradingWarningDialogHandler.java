@@ -40,6 +40,10 @@ class BlindTradingWarningDialogHandler implements WindowHandler {
         }
     }
 
+    public WindowHandlerHints getHints() {
+        return WindowHandlerHints.forDialogs().onEvents(WindowEvent.WINDOW_OPENED);
+    }
+
     public boolean recogniseWindow(Window window) {
         if (! (window instanceof JDialog)) return false;
         return (SwingUtils.findLabel(window, "blind trading") != null &&
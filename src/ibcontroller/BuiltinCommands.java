@@ -0,0 +1,373 @@
+// This file is part of the "IBController".
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2016 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBController is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBController is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBController.  If not, see <http://www.gnu.org/licenses/>.
+
+package ibcontroller;
+
+import java.awt.event.KeyEvent;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.swing.JFrame;
+
+/**
+ * The commands provided by IBController itself.
+ */
+final class BuiltinCommands {
+
+    private BuiltinCommands() {}
+
+    static void registerAll(CommandRegistry registry) {
+        registry.register(new ExitCommand());
+        registry.register(new TimeoutCommand());
+        registry.register(new JobCommand());
+        registry.register(new JobStatusCommand());
+        registry.register(new JobWaitCommand());
+        registry.register(new JobCancelCommand());
+        registry.register(new SubscribeCommand());
+        registry.register(new UnsubscribeCommand());
+        registry.register(new StopCommand());
+        registry.register(new EnableApiCommand());
+        registry.register(new ReconnectDataCommand());
+        registry.register(new ReconnectAccountCommand());
+        registry.register(new StatsCommand());
+        registry.register(new DiagnosticsCommand());
+        registry.register(new WindowStatsCommand());
+    }
+
+    /*
+     * Base class for commands that don't take arguments.
+     */
+    private static abstract class SimpleCommand implements CommandHandler {
+        private final String name;
+
+        SimpleCommand(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public final String getName() {
+            return name;
+        }
+
+        @Override
+        public final void execute(CommandRequest request) {
+            if (!request.getArguments().isEmpty()) {
+                request.writeNack("Command invalid");
+                Utils.logError("IBControllerServer: invalid command received: " + name + " " + request.getArguments());
+                return;
+            }
+            execute(request.getChannel(), request);
+        }
+
+        abstract void execute(CommandChannel channel, CommandRequest request);
+    }
+
+    private static final class ExitCommand extends SimpleCommand {
+        ExitCommand() {super("EXIT");}
+
+        @Override
+        void execute(CommandChannel channel, CommandRequest request) {
+            channel.writeAck("Goodbye");
+            request.endSession();
+        }
+    }
+
+    private static final class TimeoutCommand implements CommandHandler {
+        @Override
+        public String getName() {return "TIMEOUT";}
+
+        @Override
+        public void execute(CommandRequest request) {
+            String args = request.getArguments();
+            String timeoutArg = CommandDispatcher.getVerb(args);
+            String cmd = CommandDispatcher.getArguments(args);
+            long timeout;
+            try {
+                timeout = Long.parseLong(timeoutArg);
+            } catch (NumberFormatException e) {
+                timeout = 0;
+            }
+            if (timeout <= 0 || cmd.isEmpty()) {
+                request.writeNack("TIMEOUT requires a time in milliseconds followed by a command");
+                return;
+            }
+            Deadline deadline = Deadline.after(timeout, TimeUnit.MILLISECONDS).earliest(request.getDeadline());
+            if (!request.getDispatcher().execute(cmd, request.getChannel(), deadline)) request.endSession();
+        }
+    }
+
+    private static final class JobCommand implements CommandHandler {
+        @Override
+        public String getName() {return "JOB";}
+
+        @Override
+        public void execute(CommandRequest request) {
+            final String cmd = request.getArguments();
+            if (cmd.isEmpty()) {
+                request.writeNack("JOB requires a command");
+                return;
+            }
+            if (cmd.equalsIgnoreCase("EXIT")) {
+                request.writeNack("EXIT cannot be run as a job");
+                return;
+            }
+
+            final CommandDispatcher dispatcher = request.getDispatcher();
+            final RecordingCommandChannel jobChannel = new RecordingCommandChannel();
+            try {
+                int id = CommandJobTable.getInstance().submit(cmd, jobChannel, new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        dispatcher.execute(cmd, jobChannel, CommandDispatcher.newDeadline());
+                        return null;
+                    }
+                });
+                request.writeAck(Integer.toString(id));
+            } catch (IBControllerException e) {
+                request.writeNack(e.getMessage());
+            }
+        }
+    }
+
+    private static final class JobStatusCommand implements CommandHandler {
+        @Override
+        public String getName() {return "JOBSTATUS";}
+
+        @Override
+        public void execute(CommandRequest request) {
+            try {
+                request.writeAck(CommandJobTable.getInstance().getStatus(parseJobId(request.getArguments())));
+            } catch (IBControllerException e) {
+                request.writeNack(e.getMessage());
+            }
+        }
+    }
+
+    private static final class JobWaitCommand implements CommandHandler {
+        @Override
+        public String getName() {return "JOBWAIT";}
+
+        @Override
+        public void execute(CommandRequest request) {
+            String[] parts = request.getArgumentList();
+            if (parts.length != 2) {
+                request.writeNack("JOBWAIT requires a job id and a timeout in milliseconds");
+                return;
+            }
+            try {
+                int id = parseJobId(parts[0]);
+                long timeout;
+                try {
+                    timeout = Long.parseLong(parts[1]);
+                } catch (NumberFormatException e) {
+                    throw new IBControllerException("timeout invalid: " + parts[1]);
+                }
+                Deadline deadline = request.getDeadline();
+                if (!deadline.isUnbounded()) timeout = Math.min(timeout, deadline.remaining(TimeUnit.MILLISECONDS));
+                request.writeAck(CommandJobTable.getInstance().waitFor(id, timeout, TimeUnit.MILLISECONDS));
+            } catch (IBControllerException e) {
+                request.writeNack(e.getMessage());
+            } catch (InterruptedException e) {
+                request.writeNack("interrupted");
+            }
+        }
+    }
+
+    private static final class JobCancelCommand implements CommandHandler {
+        @Override
+        public String getName() {return "JOBCANCEL";}
+
+        @Override
+        public void execute(CommandRequest request) {
+            try {
+                request.writeAck(CommandJobTable.getInstance().cancel(parseJobId(request.getArguments())));
+            } catch (IBControllerException e) {
+                request.writeNack(e.getMessage());
+            }
+        }
+    }
+
+    private static final class SubscribeCommand implements CommandHandler {
+        @Override
+        public String getName() {return "SUBSCRIBE";}
+
+        @Override
+        public void execute(CommandRequest request) {
+            if (request.getChannel() instanceof RecordingCommandChannel) {
+                request.writeNack("SUBSCRIBE requires a connection");
+                return;
+            }
+
+            Set<String> categories = new HashSet<>();
+            for (String category : request.getArguments().toUpperCase().split("[ ,]+")) {
+                if (category.isEmpty() || category.equals("ALL")) {
+                    categories.add(EventPublisher.WINDOW);
+                    categories.add(EventPublisher.LIFECYCLE);
+                } else if (category.equals(EventPublisher.WINDOW) || category.equals(EventPublisher.LIFECYCLE)) {
+                    categories.add(category);
+                } else {
+                    request.writeNack("event category invalid: " + category);
+                    return;
+                }
+            }
+
+            if (EventPublisher.getInstance().subscribe(request.getConnection(), request.getChannel(), categories)) {
+                request.writeAck("subscribed");
+            } else {
+                request.writeNack("already subscribed");
+            }
+        }
+    }
+
+    private static final class UnsubscribeCommand extends SimpleCommand {
+        UnsubscribeCommand() {super("UNSUBSCRIBE");}
+
+        @Override
+        void execute(CommandChannel channel, CommandRequest request) {
+            if (EventPublisher.getInstance().unsubscribe(request.getConnection())) {
+                channel.writeAck("unsubscribed");
+            } else {
+                channel.writeNack("not subscribed");
+            }
+        }
+    }
+
+    private static final class StopCommand extends SimpleCommand {
+        StopCommand() {super("STOP");}
+
+        @Override
+        void execute(CommandChannel channel, CommandRequest request) {
+            (new StopTask(channel, request.getDeadline())).run();     // run on the current thread
+        }
+    }
+
+    private static final class EnableApiCommand extends SimpleCommand {
+        EnableApiCommand() {super("ENABLEAPI");}
+
+        @Override
+        void execute(CommandChannel channel, CommandRequest request) {
+            if (request.isGateway()) {
+                channel.writeNack("ENABLEAPI is not valid for the IB Gateway");
+                return;
+            }
+
+            // run on the current thread
+            try {
+                (new ConfigurationTask(new EnableApiTask(channel))).execute(request.getDeadline());
+            } catch (TimeoutException e) {
+                handleTimeout("ENABLEAPI", channel);
+            } catch (IBControllerException e) {
+                channel.writeNack(e.getMessage());
+            }
+        }
+    }
+
+    private static final class ReconnectDataCommand extends SimpleCommand {
+        ReconnectDataCommand() {super("RECONNECTDATA");}
+
+        @Override
+        void execute(CommandChannel channel, CommandRequest request) {
+            JFrame jf = MainWindowManager.mainWindowManager().getMainWindow(1, TimeUnit.MILLISECONDS);
+            if (jf == null) {
+                channel.writeNack("main window not yet available");
+                return;
+            }
+
+            int modifiers = KeyEvent.CTRL_DOWN_MASK | KeyEvent.ALT_DOWN_MASK;
+            KeyEvent pressed=new KeyEvent(jf,  KeyEvent.KEY_PRESSED, System.currentTimeMillis(), modifiers, KeyEvent.VK_F, KeyEvent.CHAR_UNDEFINED);
+            KeyEvent typed=new KeyEvent(jf, KeyEvent.KEY_TYPED, System.currentTimeMillis(), modifiers, KeyEvent.VK_UNDEFINED, 'F' );
+            KeyEvent released=new KeyEvent(jf, KeyEvent.KEY_RELEASED, System.currentTimeMillis(), modifiers, KeyEvent.VK_F,  KeyEvent.CHAR_UNDEFINED );
+            jf.dispatchEvent(pressed);
+            jf.dispatchEvent(typed);
+            jf.dispatchEvent(released);
+
+            channel.writeAck("");
+        }
+    }
+
+    private static final class ReconnectAccountCommand extends SimpleCommand {
+        ReconnectAccountCommand() {super("RECONNECTACCOUNT");}
+
+        @Override
+        void execute(CommandChannel channel, CommandRequest request) {
+            JFrame jf = MainWindowManager.mainWindowManager().getMainWindow(request.getTimeRemaining(TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS);
+            if (jf == null) {
+                handleTimeout("RECONNECTACCOUNT", channel);
+                return;
+            }
+
+            int modifiers = KeyEvent.CTRL_DOWN_MASK | KeyEvent.ALT_DOWN_MASK;
+            KeyEvent pressed=new KeyEvent(jf,  KeyEvent.KEY_PRESSED, System.currentTimeMillis(), modifiers, KeyEvent.VK_R, KeyEvent.CHAR_UNDEFINED);
+            KeyEvent typed=new KeyEvent(jf, KeyEvent.KEY_TYPED, System.currentTimeMillis(), modifiers, KeyEvent.VK_UNDEFINED, 'R' );
+            KeyEvent released=new KeyEvent(jf, KeyEvent.KEY_RELEASED, System.currentTimeMillis(), modifiers, KeyEvent.VK_R,  KeyEvent.CHAR_UNDEFINED );
+            jf.dispatchEvent(pressed);
+            jf.dispatchEvent(typed);
+            jf.dispatchEvent(released);
+
+            channel.writeAck("");
+        }
+    }
+
+    private static final class StatsCommand extends SimpleCommand {
+        StatsCommand() {super("STATS");}
+
+        @Override
+        void execute(CommandChannel channel, CommandRequest request) {
+            channel.writeAck(Json.toJson(CommandRegistry.getInstance().getStatistics()));
+        }
+    }
+
+    private static final class DiagnosticsCommand extends SimpleCommand {
+        DiagnosticsCommand() {super("DIAGNOSTICS");}
+
+        @Override
+        void execute(CommandChannel channel, CommandRequest request) {
+            Map<String, Object> diagnostics = new LinkedHashMap<>();
+            diagnostics.put("status", Diagnostics.status(request.isGateway()));
+            diagnostics.put("metrics", Diagnostics.metrics());
+            channel.writeAck(Json.toJson(diagnostics));
+        }
+    }
+
+    private static final class WindowStatsCommand extends SimpleCommand {
+        WindowStatsCommand() {super("WINDOWSTATS");}
+
+        @Override
+        void execute(CommandChannel channel, CommandRequest request) {
+            channel.writeAck(Json.toJson(WindowHandlerMetrics.getInstance().getStatistics()));
+        }
+    }
+
+    private static int parseJobId(String arg) throws IBControllerException {
+        try {
+            return Integer.parseInt(arg);
+        } catch (NumberFormatException e) {
+            throw new IBControllerException("job id invalid: " + arg);
+        }
+    }
+
+    private static void handleTimeout(String cmd, CommandChannel channel) {
+        Utils.logError("IBControllerServer: " + cmd + " timed out");
+        channel.writeNack("timeout");
+    }
+
+}
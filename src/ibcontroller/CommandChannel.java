@@ -18,74 +18,39 @@
 
 package ibcontroller;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.net.Socket;
-import java.net.SocketException;
-
-final class CommandChannel {
+abstract class CommandChannel {
 
     private static final String _Prompt = Settings.settings().getString("CommandPrompt", "");
     private static final boolean _SuppressInfo = Settings.settings().getBoolean("SuppressInfoMessages", true);
 
-    private Socket mSocket;
-    private BufferedReader mInstream = null;
-    private BufferedWriter mOutstream = null;
-
-    CommandChannel(Socket socket) {
-
-        mSocket = socket;
-        if (! setupStreams()) return;
-
-        writeInfo("IBController Server");
-        writePrompt();
-
+    /**
+     * Closes the channel.
+     */
+    abstract void close();
+
+    /**
+     * Causes the channel to stop delivering commands, so that the session
+     * ends once any command currently being processed is complete. 
+     * 
+     * This is used when a session is ended by a command that isn't being
+     * executed on the thread that reads commands from the channel. Unless 
+     * overridden, it closes the channel.
+     */
+    void endInput() {
+        close();
     }
 
-    void close() {
-        try {
-            mSocket.shutdownInput();
-            mSocket.shutdownOutput();
-
-            mInstream.close();
-            mInstream = null;
-
-            mOutstream.close();
-            mOutstream = null;
-
-            mSocket.close();
-            mSocket = null;
-        } catch (SocketException e) {
-            // the socket was reset by the client - ignore
-        } catch (IOException e) {
-            // ignore
-        }
-    }
-
-    String getCommand() {
-        String cmd = null;
-
-        if (mInstream == null) return null;
-
-        try {
-            cmd = mInstream.readLine();
-            while (cmd != null && cmd.trim().isEmpty()) {
-                writePrompt();
-                cmd = mInstream.readLine();
-            }
-
-            if (cmd != null) Utils.logToConsole("IBControllerServer received command: " + cmd);
-        } catch (SocketException e) {
-            // the socket was reset by the client
-            close();
-        } catch (IOException e) {
-            close();
-        }
-        return cmd;
-    }
+    /**
+     * Returns the next command received on this channel.
+     * 
+     * A blocking channel waits until a command arrives, so for such a channel
+     * a null return indicates that the connection has ended. A non-blocking 
+     * channel returns null as soon as there are no further commands waiting 
+     * to be processed.
+     * @return
+     * the next command, or null if there is none
+     */
+    abstract String getCommand();
 
     void writeAck(String info) {
         replyLine("OK " + info);
@@ -100,39 +65,35 @@ final class CommandChannel {
     }
 
     void writePrompt() {
-        if (! _Prompt.isEmpty()) reply(_Prompt);
+        if (! _Prompt.isEmpty()) reply(_Prompt, false);
     }
 
-    private void reply(String message) {
-        reply(message, false);
+    /**
+     * Sends the greeting that a client sees when it first connects.
+     */
+    final void writeGreeting() {
+        writeInfo("IBController Server");
+        writePrompt();
     }
 
-    private void reply(String message, boolean addNewline) {
-        if (mOutstream == null) return;
-        try {
-            mOutstream.write(message);
-            if (addNewline) mOutstream.newLine();
-            mOutstream.flush();
-        } catch (SocketException e) {
-            // the socket was reset by the client
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+    abstract void reply(String message, boolean addNewline);
+
+    /**
+     * Indicates whether so much output is waiting to be sent to the client 
+     * that no more should be written for the time being, other than replies 
+     * to commands.
+     * 
+     * A channel that returns true must call EventPublisher.outputDrained() 
+     * once its output has been sent.
+     * @return
+     * true if output is backlogged; otherwise false
+     */
+    boolean isOutputBacklogged() {
+        return false;
     }
 
     private void replyLine(String message) {
         reply(message,true);
     }
 
-    private boolean setupStreams() {
-        try {
-            mInstream = new BufferedReader(new InputStreamReader(mSocket.getInputStream()));
-            mOutstream = new BufferedWriter(new OutputStreamWriter(mSocket.getOutputStream()));
-            return true;
-        } catch (IOException e) {
-            // this is most likely a result of the user closing the command connection
-            return false;
-        }
-    }
-
 }
@@ -18,16 +18,33 @@
 
 package ibcontroller;
 
-import java.awt.event.KeyEvent;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
-import javax.swing.JFrame;
 
 class CommandDispatcher
         implements Runnable {
 
+    /*
+     * The time allowed for a command, in milliseconds, unless the client 
+     * specifies otherwise using the TIMEOUT prefix. Zero means no limit.
+     */
+    private static final int _CommandTimeout = Settings.settings().getInt("CommandTimeout", 0);
+
+    /*
+     * The maximum number of tagged commands from one connection that may be
+     * executing at once.
+     */
+    private static final int _MaxTaggedCommands = Math.max(1, Settings.settings().getInt("MaxTaggedCommands", 8));
+
     private final CommandChannel mChannel;
     private final boolean isGateway;
 
+    // set when a tagged EXIT ends the session
+    private volatile boolean mSessionEnded;
+
+    // limits the number of tagged commands executing at once
+    private final Semaphore mTaggedPermits = new Semaphore(_MaxTaggedCommands);
+
     CommandDispatcher(CommandChannel channel, boolean isGateway) {
         this.mChannel = channel;
         this.isGateway = isGateway;
@@ -35,72 +52,112 @@ class CommandDispatcher
 
     @Override public void run() {
         String cmd = mChannel.getCommand();
-        while (cmd != null) {
-            if (cmd.equalsIgnoreCase("EXIT")) {
-                mChannel.writeAck("Goodbye");
-                break;
-            } else if (cmd.equalsIgnoreCase("STOP")) {
-                handleStopCommand();
-            } else if (cmd.equalsIgnoreCase("ENABLEAPI")) {
-                handleEnableAPICommand();
-            } else if (cmd.equalsIgnoreCase("RECONNECTDATA")) {
-            	handleReconnectDataCommand();
-            } else if (cmd.equalsIgnoreCase("RECONNECTACCOUNT")) {
-            	handleReconnectAccountCommand();
-            } else {
-                handleInvalidCommand(cmd);
-            }
+        while (cmd != null && !mSessionEnded) {
+            if (!dispatch(cmd)) break;
             mChannel.writePrompt();
             cmd = mChannel.getCommand();
         }
+        EventPublisher.getInstance().unsubscribe(mChannel);
         mChannel.close();
     }
 
-    private void handleInvalidCommand(String cmd) {
-        mChannel.writeNack("Command invalid");
-        Utils.logError("IBControllerServer: invalid command received: " + cmd);
+    /**
+     * Executes a single command on the calling thread.
+     * 
+     * A tagged command (see TaggedCommandChannel) is instead executed 
+     * asynchronously, and this method returns without waiting for it, 
+     * unless the maximum number of tagged commands (see the 
+     * MaxTaggedCommands setting) are already executing, in which case it 
+     * first waits for one of them to finish. Since no further commands are
+     * read from the channel meanwhile, a client can't use tagged commands to
+     * get round the limits on queued commands.
+     * @param cmd
+     * the command
+     * @return
+     * false if the command ends the session (ie EXIT); otherwise true
+     */
+    boolean dispatch(String cmd) {
+        if (TaggedCommandChannel.isTagged(cmd)) {
+            dispatchTagged(cmd);
+            return true;
+        }
+        return execute(cmd, mChannel, newDeadline());
     }
 
-    private void handleEnableAPICommand() {
-        if (isGateway) {
-            mChannel.writeNack("ENABLEAPI is not valid for the IB Gateway");
+    private void dispatchTagged(String line) {
+        final String tag = TaggedCommandChannel.getTag(line);
+        if (tag == null) {
+            mChannel.writeNack("Tag invalid: must be 1 to " + TaggedCommandChannel.MAX_TAG_LENGTH + " characters");
             return;
         }
-        
-        // run on the current thread
-        (new ConfigurationTask(new EnableApiTask(mChannel))).execute();
-   }
-
-    private void handleReconnectDataCommand() {
-        JFrame jf = MainWindowManager.mainWindowManager().getMainWindow(1, TimeUnit.MILLISECONDS);
-
-        int modifiers = KeyEvent.CTRL_DOWN_MASK | KeyEvent.ALT_DOWN_MASK;
-        KeyEvent pressed=new KeyEvent(jf,  KeyEvent.KEY_PRESSED, System.currentTimeMillis(), modifiers, KeyEvent.VK_F, KeyEvent.CHAR_UNDEFINED);
-        KeyEvent typed=new KeyEvent(jf, KeyEvent.KEY_TYPED, System.currentTimeMillis(), modifiers, KeyEvent.VK_UNDEFINED, 'F' );
-        KeyEvent released=new KeyEvent(jf, KeyEvent.KEY_RELEASED, System.currentTimeMillis(), modifiers, KeyEvent.VK_F,  KeyEvent.CHAR_UNDEFINED );
-        jf.dispatchEvent(pressed);
-        jf.dispatchEvent(typed);
-        jf.dispatchEvent(released);
-      
-        mChannel.writeAck("");
-   }
-
-    private void handleReconnectAccountCommand() {
-        JFrame jf = MainWindowManager.mainWindowManager().getMainWindow();
-
-        int modifiers = KeyEvent.CTRL_DOWN_MASK | KeyEvent.ALT_DOWN_MASK;
-        KeyEvent pressed=new KeyEvent(jf,  KeyEvent.KEY_PRESSED, System.currentTimeMillis(), modifiers, KeyEvent.VK_R, KeyEvent.CHAR_UNDEFINED);
-        KeyEvent typed=new KeyEvent(jf, KeyEvent.KEY_TYPED, System.currentTimeMillis(), modifiers, KeyEvent.VK_UNDEFINED, 'R' );
-        KeyEvent released=new KeyEvent(jf, KeyEvent.KEY_RELEASED, System.currentTimeMillis(), modifiers, KeyEvent.VK_R,  KeyEvent.CHAR_UNDEFINED );
-        jf.dispatchEvent(pressed);
-        jf.dispatchEvent(typed);
-        jf.dispatchEvent(released);
-
-        mChannel.writeAck("");
+
+        final String cmd = TaggedCommandChannel.getCommand(line);
+        final CommandChannel channel = new TaggedCommandChannel(mChannel, tag);
+        final Deadline deadline = newDeadline();
+        if (cmd.isEmpty()) {
+            channel.writeNack("Command missing");
+            return;
+        }
+
+        mTaggedPermits.acquireUninterruptibly();
+        try {
+            MyCachedThreadPool.getInstance().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if (!execute(cmd, channel, deadline)) {
+                            // the thread reading commands closes the channel
+                            mSessionEnded = true;
+                            mChannel.endInput();
+                        }
+                    } finally {
+                        mTaggedPermits.release();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            mTaggedPermits.release();
+            throw e;
+        }
     }
 
-    private void handleStopCommand() {
-        (new StopTask(mChannel)).run();     // run on the current thread
+    /**
+     * Executes a command on the calling thread, using the CommandHandler 
+     * registered for it in the CommandRegistry.
+     * @param cmd
+     * the command
+     * @param channel
+     * the channel to which replies are written
+     * @param deadline
+     * the time by which the command must complete
+     * @return
+     * false if the command ends the session (ie EXIT); otherwise true
+     */
+    boolean execute(String cmd, CommandChannel channel, Deadline deadline) {
+        CommandRequest request = new CommandRequest(getVerb(cmd), getArguments(cmd), channel, mChannel, deadline, this, isGateway);
+        if (!CommandRegistry.getInstance().execute(request)) handleInvalidCommand(cmd, channel);
+        return !request.isSessionEnded();
     }
-    
+
+    static String getArguments(String cmd) {
+        String s = cmd.trim();
+        int i = s.indexOf(' ');
+        return (i < 0) ? "" : s.substring(i + 1).trim();
+    }
+
+    static String getVerb(String cmd) {
+        String s = cmd.trim();
+        int i = s.indexOf(' ');
+        return (i < 0) ? s : s.substring(0, i);
+    }
+
+    static Deadline newDeadline() {
+        return Deadline.after(_CommandTimeout, TimeUnit.MILLISECONDS);
+    }
+
+    private void handleInvalidCommand(String cmd, CommandChannel channel) {
+        channel.writeNack("Command invalid");
+        Utils.logError("IBControllerServer: invalid command received: " + cmd);
+    }
+
 }
@@ -0,0 +1,57 @@
+// This file is part of the "IBController".
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2016 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBController is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBController is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBController.  If not, see <http://www.gnu.org/licenses/>.
+
+package ibcontroller;
+
+/**
+ * Implements a command that can be sent to IBController via IBControllerServer
+ * (or the HTTP control server).
+ * 
+ * IBController's own commands are implemented as CommandHandlers. Additional 
+ * commands can be provided without modifying IBController by implementing 
+ * this interface in a jar on the classpath, and listing the implementing
+ * classes in a file called META-INF/services/ibcontroller.CommandHandler in
+ * that jar (see java.util.ServiceLoader). Implementations must have a public
+ * no-argument constructor.
+ * 
+ * A single instance of each handler is shared by all connections, so 
+ * implementations must be thread-safe.
+ */
+public interface CommandHandler {
+
+    /**
+     * Returns the name of the command, ie the first word of the command line. 
+     * Command names are not case-sensitive, and a name that is already used by
+     * another command is ignored.
+     * @return
+     * the command name
+     */
+    String getName();
+
+    /**
+     * Executes the command.
+     * 
+     * The handler must reply using the request's writeAck() or writeNack() 
+     * methods before returning. It may also send intermediate messages using 
+     * writeInfo().
+     * @param request
+     * the command's arguments, and the means of replying to it
+     */
+    void execute(CommandRequest request);
+
+}
@@ -0,0 +1,212 @@
+// This file is part of the "IBController".
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2016 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBController is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBController is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBController.  If not, see <http://www.gnu.org/licenses/>.
+
+package ibcontroller;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps track of commands that are being, or have been, run as jobs via the
+ * JOB command.
+ * 
+ * A job's final reply is retained for the period specified by the 
+ * CommandJobRetention setting (in seconds) after it finishes, so that 
+ * it can be retrieved with JOBSTATUS or JOBWAIT. The number of jobs held is 
+ * limited by the CommandJobLimit setting: when the table is full the oldest 
+ * finished job is discarded, and if all the jobs are still running, no new
+ * job can be submitted.
+ */
+class CommandJobTable {
+
+    static final String STATE_RUNNING = "RUNNING";
+    static final String STATE_COMPLETED = "COMPLETED";
+    static final String STATE_CANCELLED = "CANCELLED";
+
+    private static final CommandJobTable instance = new CommandJobTable();
+
+    private final int maxJobs = Settings.settings().getInt("CommandJobLimit", 100);
+    private final long retentionNanos = TimeUnit.SECONDS.toNanos(Settings.settings().getInt("CommandJobRetention", 600));
+
+    private final AtomicInteger nextJobId = new AtomicInteger(1);
+
+    // in order of submission
+    private final Map<Integer, Job> jobs = new LinkedHashMap<>();
+
+    private CommandJobTable() {}
+
+    static CommandJobTable getInstance() {return instance;}
+
+    /**
+     * Starts running a command as a job.
+     * @param command
+     * the command text, used only for reporting
+     * @param channel
+     * the channel that records the command's replies
+     * @param task
+     * runs the command
+     * @return
+     * the job's id
+     * @throws IBControllerException
+     * the job table is full of running jobs
+     */
+    int submit(String command, RecordingCommandChannel channel, Callable<Void> task) throws IBControllerException {
+        Job job;
+        synchronized (jobs) {
+            evict();
+            if (jobs.size() >= maxJobs) throw new IBControllerException("too many jobs: limit is " + maxJobs);
+            job = new Job(nextJobId.getAndIncrement(), command, channel, task);
+            jobs.put(job.id, job);
+        }
+        MyCachedThreadPool.getInstance().execute(job);
+        return job.id;
+    }
+
+    /**
+     * Cancels a job, interrupting it if it is running.
+     * @param id
+     * the job's id
+     * @return
+     * the job's status after cancellation
+     * @throws IBControllerException
+     * there is no such job, or it has already finished
+     */
+    String cancel(int id) throws IBControllerException {
+        Job job = getJob(id);
+        if (!job.cancel(true)) throw new IBControllerException("job " + id + " has already finished");
+        return job.getStatus();
+    }
+
+    /**
+     * Returns the status of a job.
+     * @param id
+     * the job's id
+     * @return
+     * the job's status
+     * @throws IBControllerException
+     * there is no such job
+     */
+    String getStatus(int id) throws IBControllerException {
+        return getJob(id).getStatus();
+    }
+
+    /**
+     * Waits for a job to finish, and returns its status.
+     * @param id
+     * the job's id
+     * @param timeout
+     * the maximum time to wait
+     * @param unit
+     * the units of timeout
+     * @return
+     * the job's status, which indicates that it's still running if the
+     * timeout expired
+     * @throws IBControllerException
+     * there is no such job
+     * @throws InterruptedException 
+     */
+    String waitFor(int id, long timeout, TimeUnit unit) throws IBControllerException, InterruptedException {
+        Job job = getJob(id);
+        try {
+            job.get(timeout, unit);
+        } catch (TimeoutException | ExecutionException | CancellationException e) {
+            // the status reports what happened
+        }
+        return job.getStatus();
+    }
+
+    /**
+     * Returns the number of jobs currently held.
+     * @return
+     * the number of jobs, whether running or finished
+     */
+    int size() {
+        synchronized (jobs) {
+            return jobs.size();
+        }
+    }
+
+    private void evict() {
+        long now = System.nanoTime();
+        Iterator<Job> it = jobs.values().iterator();
+        while (it.hasNext()) {
+            Job job = it.next();
+            if (job.isDone() && now - job.finishedAt >= retentionNanos) it.remove();
+        }
+        if (jobs.size() < maxJobs) return;
+
+        it = jobs.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().isDone()) {
+                it.remove();
+                return;
+            }
+        }
+    }
+
+    private Job getJob(int id) throws IBControllerException {
+        synchronized (jobs) {
+            evict();
+            Job job = jobs.get(id);
+            if (job == null) throw new IBControllerException("job " + id + " not found");
+            return job;
+        }
+    }
+
+    private static final class Job extends FutureTask<Void> {
+        final int id;
+        final String command;
+        final RecordingCommandChannel channel;
+        volatile long finishedAt;
+
+        Job(int id, String command, RecordingCommandChannel channel, Callable<Void> task) {
+            super(task);
+            this.id = id;
+            this.command = command;
+            this.channel = channel;
+        }
+
+        @Override
+        protected void done() {
+            finishedAt = System.nanoTime();
+        }
+
+        String getStatus() {
+            if (isCancelled()) return id + " " + STATE_CANCELLED + " " + command;
+            if (!isDone()) return id + " " + STATE_RUNNING + " " + command;
+
+            String reply = channel.getReply();
+            try {
+                get();
+            } catch (InterruptedException | ExecutionException e) {
+                Throwable t = (e instanceof ExecutionException) ? e.getCause() : e;
+                reply = "ERROR " + t.toString();
+            }
+            return id + " " + STATE_COMPLETED + " " + (reply == null ? "" : reply);
+        }
+    }
+
+}
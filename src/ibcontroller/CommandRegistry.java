@@ -0,0 +1,150 @@
+// This file is part of the "IBController".
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2016 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBController is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBController is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBController.  If not, see <http://www.gnu.org/licenses/>.
+
+package ibcontroller;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Maps command names to the CommandHandlers that implement them, and keeps
+ * invocation counts and latencies for each command.
+ * 
+ * The registry contains IBController's built-in commands (see BuiltinCommands)
+ * together with any CommandHandlers found on the classpath using ServiceLoader.
+ * It is populated once, when first used, and is not modified thereafter, so 
+ * lookups need no locking.
+ */
+class CommandRegistry {
+
+    private static final CommandRegistry instance = new CommandRegistry();
+
+    private final Map<String, Entry> commands = new HashMap<>();
+
+    private CommandRegistry() {
+        BuiltinCommands.registerAll(this);
+        loadExtensions();
+    }
+
+    static CommandRegistry getInstance() {return instance;}
+
+    /**
+     * Executes a command on the calling thread.
+     * @param request
+     * the command to execute
+     * @return
+     * false if there is no such command; otherwise true
+     */
+    boolean execute(CommandRequest request) {
+        Entry entry = commands.get(request.getName().toUpperCase(Locale.ROOT));
+        if (entry == null) return false;
+
+        long start = System.nanoTime();
+        try {
+            entry.handler.execute(request);
+        } catch (RuntimeException e) {
+            Utils.logException(e);
+            entry.exceptions.increment();
+            request.writeNack(request.getName().toUpperCase(Locale.ROOT) + " failed: " + e.toString());
+        } finally {
+            entry.record(System.nanoTime() - start);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the invocation counts and latencies of all commands.
+     * @return
+     * a map of command name to statistics, in order of command name
+     */
+    Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new TreeMap<>();
+        for (Map.Entry<String, Entry> e : commands.entrySet()) {
+            statistics.put(e.getKey(), e.getValue().getStatistics());
+        }
+        return statistics;
+    }
+
+    void register(CommandHandler handler) {
+        String name = handler.getName();
+        if (name == null || name.isEmpty() || name.contains(" ")) {
+            Utils.logError("command handler " + handler.getClass().getName() + " has an invalid name: " + name);
+            return;
+        }
+        name = name.toUpperCase(Locale.ROOT);
+        if (commands.containsKey(name)) {
+            Utils.logError("command handler " + handler.getClass().getName() + " ignored: " + name + " is already defined");
+            return;
+        }
+        commands.put(name, new Entry(handler));
+    }
+
+    private void loadExtensions() {
+        Iterator<CommandHandler> it = ServiceLoader.load(CommandHandler.class).iterator();
+        for (;;) {
+            try {
+                if (!it.hasNext()) break;
+                CommandHandler handler = it.next();
+                register(handler);
+                Utils.logToConsole("registered command " + handler.getName() + ": " + handler.getClass().getName());
+            } catch (ServiceConfigurationError e) {
+                Utils.logError("could not load command handler: " + e.getMessage());
+            }
+        }
+    }
+
+    private static final class Entry {
+        final CommandHandler handler;
+        final LongAdder count = new LongAdder();
+        final LongAdder exceptions = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final AtomicLong maxNanos = new AtomicLong();
+
+        Entry(CommandHandler handler) {
+            this.handler = handler;
+        }
+
+        void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+                max = maxNanos.get();
+            }
+        }
+
+        Map<String, Object> getStatistics() {
+            long n = count.sum();
+            Map<String, Object> statistics = new LinkedHashMap<>();
+            statistics.put("count", n);
+            statistics.put("exceptions", exceptions.sum());
+            statistics.put("meanMillis", (n == 0) ? 0.0 : totalNanos.sum() / n / 1000000.0);
+            statistics.put("maxMillis", maxNanos.get() / 1000000.0);
+            return statistics;
+        }
+    }
+
+}
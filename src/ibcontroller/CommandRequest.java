@@ -0,0 +1,151 @@
+// This file is part of the "IBController".
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2016 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBController is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBController is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBController.  If not, see <http://www.gnu.org/licenses/>.
+
+package ibcontroller;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single invocation of a command, as passed to a CommandHandler.
+ */
+public final class CommandRequest {
+
+    private static final String[] NO_ARGUMENTS = new String[0];
+
+    private final String name;
+    private final String arguments;
+    private final CommandChannel channel;
+    private final CommandChannel connection;
+    private final Deadline deadline;
+    private final CommandDispatcher dispatcher;
+    private final boolean isGateway;
+    private boolean sessionEnded;
+
+    CommandRequest(String name, 
+                    String arguments, 
+                    CommandChannel channel, 
+                    CommandChannel connection, 
+                    Deadline deadline, 
+                    CommandDispatcher dispatcher,
+                    boolean isGateway) {
+        this.name = name;
+        this.arguments = arguments;
+        this.channel = channel;
+        this.connection = connection;
+        this.deadline = deadline;
+        this.dispatcher = dispatcher;
+        this.isGateway = isGateway;
+    }
+
+    /**
+     * Returns the command name, as sent by the client.
+     * @return
+     * the command name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the remainder of the command line following the command name.
+     * @return
+     * the arguments, with leading and trailing whitespace removed; an empty 
+     * string if there are none
+     */
+    public String getArguments() {
+        return arguments;
+    }
+
+    /**
+     * Returns the arguments split into words.
+     * @return
+     * the whitespace-separated arguments; an empty array if there are none
+     */
+    public String[] getArgumentList() {
+        return arguments.isEmpty() ? NO_ARGUMENTS : arguments.split("\\s+");
+    }
+
+    /**
+     * Indicates whether IBController is running the Gateway.
+     * @return
+     * true if IBController is running the Gateway; false if it is running TWS
+     */
+    public boolean isGateway() {
+        return isGateway;
+    }
+
+    /**
+     * Returns the time remaining before the command's deadline (see the 
+     * CommandTimeout setting and the TIMEOUT command).
+     * @param unit
+     * the required time unit
+     * @return
+     * -1 if the command has no deadline; 0 if the deadline has passed; 
+     * otherwise the time remaining
+     */
+    public long getTimeRemaining(TimeUnit unit) {
+        return deadline.remaining(unit);
+    }
+
+    public void writeAck(String message) {
+        channel.writeAck(message);
+    }
+
+    public void writeInfo(String message) {
+        channel.writeInfo(message);
+    }
+
+    public void writeNack(String message) {
+        channel.writeNack(message);
+    }
+
+    /*
+     * The channel to which replies are to be written.
+     */
+    CommandChannel getChannel() {
+        return channel;
+    }
+
+    /*
+     * The channel for the client's connection: this differs from the reply 
+     * channel for tagged commands.
+     */
+    CommandChannel getConnection() {
+        return connection;
+    }
+
+    Deadline getDeadline() {
+        return deadline;
+    }
+
+    CommandDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    /*
+     * Marks the client's session as finished (see EXIT).
+     */
+    void endSession() {
+        sessionEnded = true;
+    }
+
+    boolean isSessionEnded() {
+        return sessionEnded;
+    }
+
+}
@@ -0,0 +1,307 @@
+// This file is part of the "IBController".
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2016 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBController is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBController is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBController.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package ibcontroller;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import javax.swing.AbstractButton;
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JComboBox;
+import javax.swing.JLabel;
+import javax.swing.JRadioButton;
+import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
+
+/**
+ * A snapshot of a container hierarchy, built with a single traversal, that
+ * supports the same lookups as the find* methods in {@link SwingUtils}.
+ * 
+ * Handlers that need to locate several controls in the same window should
+ * build one index and query it, rather than calling the SwingUtils methods
+ * repeatedly, since each of those walks the whole hierarchy afresh.
+ * 
+ * Note that the index reflects the hierarchy (and the buttons' and labels' 
+ * text) at the time it was built: if the window's content changes, a new
+ * index must be built.
+ */
+final class ComponentIndex {
+
+    private final List<Component> components = new ArrayList<>();
+
+    // components keyed by button or label text, in traversal order
+    private final Map<String, List<Component>> byText = new HashMap<>();
+
+    // the first component with each name
+    private final Map<String, Component> byName = new HashMap<>();
+
+    // components of a given type, in traversal order: built on demand
+    private final Map<Class<?>, List<?>> byType = new HashMap<>();
+
+    private ComponentIndex() {
+    }
+
+    /**
+     * Builds an index of the given container's hierarchy. The traversal is 
+     * done on the event dispatch thread.
+     * @param container
+     *  the Container to be indexed
+     * @return
+     *  the index;  this is empty if the calling thread is interrupted
+     *  while waiting for the traversal
+     */
+    static ComponentIndex of(final Container container) {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            ComponentIndex index = SwingUtils.callOnEventDispatchThread(new Callable<ComponentIndex>() {
+                @Override
+                public ComponentIndex call() {
+                    return of(container);
+                }
+            });
+            return (index == null) ? new ComponentIndex() : index;
+        }
+
+        final ComponentIndex index = new ComponentIndex();
+        ComponentTraversal.traverse(container, new ComponentTraversal.Visitor() {
+            @Override
+            public int visit(Component component, int depth) {
+                index.add(component);
+                return ComponentTraversal.CONTINUE;
+            }
+        });
+        return index;
+    }
+
+    private void add(Component component) {
+        components.add(component);
+
+        String text = null;
+        if (component instanceof AbstractButton) {
+            text = ((AbstractButton)component).getText();
+        } else if (component instanceof JLabel) {
+            text = ((JLabel)component).getText();
+        }
+        if (text != null) {
+            List<Component> list = byText.get(text);
+            if (list == null) {
+                list = new ArrayList<>(1);
+                byText.put(text, list);
+            }
+            list.add(component);
+        }
+
+        String name = component.getName();
+        if (name != null && !byName.containsKey(name)) byName.put(name, component);
+    }
+
+    /**
+     * Returns all the indexed components of the given type, in traversal
+     * order.
+     * @param type
+     *  the required type (subclasses are included)
+     * @return
+     *  an unmodifiable list of the components
+     */
+    @SuppressWarnings("unchecked")
+    <T> List<T> getAll(Class<T> type) {
+        List<T> list = (List<T>)byType.get(type);
+        if (list == null) {
+            List<T> found = new ArrayList<>();
+            for (Component component : components) {
+                if (type.isInstance(component)) found.add(type.cast(component));
+            }
+            list = Collections.unmodifiableList(found);
+            byType.put(type, list);
+        }
+        return list;
+    }
+
+    /**
+     * Returns the number of components in the index.
+     */
+    int size() {
+        return components.size();
+    }
+
+    private <T> T findByText(Class<T> type, String text) {
+        List<Component> list = byText.get(text);
+        if (list == null) return null;
+        for (Component component : list) {
+            if (type.isInstance(component)) return type.cast(component);
+        }
+        return null;
+    }
+
+    private <T> T findByOrdinal(Class<T> type, int ith) {
+        List<T> list = getAll(type);
+        return (ith >= 0 && ith < list.size()) ? list.get(ith) : null;
+    }
+
+    /**
+     * Returns the button with the given text.
+     * @param text
+     *  the label of the button to be found
+     * @return
+     *  the button, if was found;  otherwise null
+     */
+    JButton findButton(String text) {
+        return findByText(JButton.class, text);
+    }
+
+    /**
+     * Returns the checkbox with the given text.
+     * @param text
+     *  the label of the checkbox to be found
+     * @return
+     *  the checkbox, if it was found;  otherwise null
+     */
+    JCheckBox findCheckBox(String text) {
+        return findByText(JCheckBox.class, text);
+    }
+
+    /**
+     * Returns the ith JComboBox (0 based indexing).
+     * @param ith
+     *  specifies which JComboBox to return
+     * @return
+     *  the required JComboBox if it is found, otherwise null
+     */
+    JComboBox<?> findComboBox(int ith) {
+        return findByOrdinal(JComboBox.class, ith);
+    }
+
+    /**
+     * Returns the Component with the given name.
+     * @param name
+     *  the name of the Component to be found
+     * @return
+     *  the Component, if it was found;  otherwise null
+     */
+    Component findComponent(String name) {
+        return byName.get(name);
+    }
+
+    /**
+     * Returns the first JLabel whose text contains the given substring.
+     * @param text
+     *  the substring to find in a JLabel
+     * @return
+     *  the JLabel, if it was found;  otherwise null
+     */
+    JLabel findLabel(String text) {
+        for (JLabel label : getAll(JLabel.class)) {
+            if (label.getText() != null && label.getText().contains(text)) return label;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the radio button with the given text.
+     * @param text
+     *  the label of the radio button to be found
+     * @return
+     *  the radio button, if it was found;  otherwise null
+     */
+    JRadioButton findRadioButton(String text) {
+        return findByText(JRadioButton.class, text);
+    }
+
+    /**
+     * Returns the ith JTextField (0 based indexing).
+     * @param ith
+     *  specifies which JTextField to return
+     * @return
+     *  the required JTextField if it is found, otherwise null
+     */
+    JTextField findTextField(int ith) {
+        return findByOrdinal(JTextField.class, ith);
+    }
+
+    /**
+     * Performs a click on the button labelled with the specified text.
+     * @param buttonText
+     *  the button's label
+     * @return
+     *  true if the button was found;  false if the button was not found
+     */
+    boolean clickButton(String buttonText) {
+        return SwingUtils.clickButton(findButton(buttonText), buttonText);
+    }
+
+    /**
+     * Performs a click on the first of the buttons labelled with the 
+     * specified texts that is present: this is useful where the label 
+     * differs between TWS versions or languages.
+     * @param buttonTexts
+     *  the possible labels, in order of preference
+     * @return
+     *  true if one of the buttons was found;  otherwise false
+     */
+    boolean clickAnyButton(String... buttonTexts) {
+        for (String buttonText : buttonTexts) {
+            if (clickButton(buttonText)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Sets or clears the JCheckBox with the specified text.
+     * @param buttonText
+     *  the label of the JCheckBox
+     * @param value
+     *  true to set the JCheckBox; false to clear it
+     * @return
+     *  true if the JCheckBox was found; otherwise false
+     */
+    boolean setCheckBoxSelected(String buttonText, boolean value) {
+        return SwingUtils.setCheckBoxSelected(findCheckBox(buttonText), value);
+    }
+
+    /**
+     * Selects the JRadioButton with the specified text.
+     * @param buttonText
+     *  the label of the JRadioButton
+     * @return
+     *  true if the JRadioButton was found; otherwise false
+     */
+    boolean setRadioButtonSelected(String buttonText) {
+        return SwingUtils.setRadioButtonSelected(findRadioButton(buttonText));
+    }
+
+    /**
+     * Sets the ith JTextField (0 based indexing) to the given value.
+     * @param fieldNumber
+     *  specifies which JTextField to set
+     * @param value
+     *  the value to be set in the JTextField
+     * @return
+     *  true if the JTextField was found; otherwise false
+     */
+    boolean setTextField(int fieldNumber, String value) {
+        return SwingUtils.setTextField(findTextField(fieldNumber), value);
+    }
+
+}
@@ -20,19 +20,30 @@ package ibcontroller;
 
 import java.awt.Component;
 import java.awt.Container;
-import java.util.ArrayDeque;
-import java.util.Deque;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
+/**
+ * Iterates over the components below a container, in depth-first order.
+ * 
+ * The iterator keeps a stack of containers and child indices rather than
+ * copying each container's child array, so iterating over a hierarchy only
+ * allocates the iterator itself. See also {@link ComponentTraversal}, which 
+ * doesn't allocate at all.
+ */
 class ComponentIterator implements Iterator<Component> {
     
-    Deque<NodeState> mStack = new ArrayDeque<>();
+    private Container[] mContainers = new Container[8];
+    
+    private int[] mIndices = new int[8];
+    
+    private int mTop = -1;
     
     Component mCurrent;
     
     ComponentIterator(Container container) {
-        mStack.push(new NodeState(container));
+        if (container != null) push(container);
     }
 
     @Override
@@ -55,33 +66,33 @@ class ComponentIterator implements Iterator<Component> {
     }
     
     private boolean moveNext() {
-        if (mStack.isEmpty()) return false;
-        while (true) {
-            NodeState currentState = mStack.peek();
-            if (currentState.subComponents == null) {
-                mStack.pop();
-                if (mStack.isEmpty()) return false;
-            } else {
-                if (currentState.index < currentState.subComponents.length) {
-                    mCurrent = currentState.subComponents[currentState.index++];
-                    mStack.push(new NodeState(mCurrent));
-                    return true;
-                } else {
-                    mStack.pop();
-                    if (mStack.isEmpty()) return false;
-                }
+        while (mTop >= 0) {
+            Container container = mContainers[mTop];
+            int i = mIndices[mTop];
+            if (i >= container.getComponentCount()) {
+                mContainers[mTop--] = null;
+                continue;
+            }
+            mIndices[mTop] = i + 1;
+            try {
+                mCurrent = container.getComponent(i);
+            } catch (ArrayIndexOutOfBoundsException e) {
+                // a component has been removed since getComponentCount()
+                continue;
             }
+            if (mCurrent instanceof Container) push((Container)mCurrent);
+            return true;
         }
+        return false;
     }
     
-    private class NodeState {
-        int index;
-        Component[] subComponents;
-        
-        NodeState(Component component) {
-            this.index = 0;
-            if (component instanceof Container) subComponents = ((Container)component).getComponents();
+    private void push(Container container) {
+        if (++mTop == mContainers.length) {
+            mContainers = Arrays.copyOf(mContainers, mTop * 2);
+            mIndices = Arrays.copyOf(mIndices, mTop * 2);
         }
+        mContainers[mTop] = container;
+        mIndices[mTop] = 0;
     }
     
 }
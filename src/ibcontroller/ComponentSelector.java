@@ -0,0 +1,434 @@
+// This file is part of the "IBController".
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2016 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBController is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBController is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBController.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package ibcontroller;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Dialog;
+import java.awt.Frame;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import javax.swing.AbstractButton;
+import javax.swing.JLabel;
+import javax.swing.SwingUtilities;
+
+/**
+ * A compiled selector that identifies components within a container 
+ * hierarchy, using a small language modelled on CSS selectors, for example:
+ * 
+ *     JButton[text='OK'|'Yes']
+ *     [name='Socket port'] JTextField:nth(0)
+ *     JDialog > JRootPane JLabel[text*='Newer Version']
+ * 
+ * A selector is a sequence of compound selectors separated by combinators:
+ * whitespace means that the component on the right is a descendant of the 
+ * one on the left, and '>' means that it is a direct child. The container 
+ * being searched can itself match any but the last compound selector.
+ * 
+ * A compound selector consists of an optional type (the simple or fully 
+ * qualified name of the component's class or of one of its superclasses, 
+ * or *), followed by any number of attribute conditions and pseudo-classes:
+ * 
+ *     [key=values]     the attribute equals one of the values
+ *     [key*=values]    the attribute contains one of the values
+ *     [key^=values]    the attribute starts with one of the values
+ *     :enabled         the component is enabled
+ *     :selected        the component is a selected button or checkbox
+ *     :nth(n)          the nth match (0 based), in traversal order; only
+ *                      allowed in the last compound selector
+ * 
+ * The keys are text (the text of a button or label), name (the component's
+ * name) and title (the title of a frame or dialog). Values are quoted with
+ * single or double quotes and separated by |, and a backslash escapes the 
+ * following character.
+ * 
+ * Where the last compound selector has an attribute with several values 
+ * and there is no :nth, a component matching an earlier value is preferred 
+ * to one matching a later value, regardless of their positions in the 
+ * hierarchy, so that 'OK'|'Yes' behaves like trying OK and then Yes, but 
+ * with only one traversal.
+ * 
+ * Selectors are compiled once, and are immutable and thread-safe, so they 
+ * are normally held in static fields.
+ */
+final class ComponentSelector {
+
+    private static final int EQUALS = 0;
+    private static final int CONTAINS = 1;
+    private static final int STARTS_WITH = 2;
+
+    private static final class Attribute {
+        final String key;
+        final int operator;
+        final String[] values;
+
+        Attribute(String key, int operator, String[] values) {
+            this.key = key;
+            this.operator = operator;
+            this.values = values;
+        }
+
+        /*
+         * Returns the index of the first value that the component's attribute
+         * matches, or -1 if none matches.
+         */
+        int match(Component component) {
+            String actual = getAttribute(component);
+            if (actual == null) return -1;
+            for (int i = 0; i < values.length; i++) {
+                switch (operator) {
+                    case EQUALS:
+                        if (actual.equals(values[i])) return i;
+                        break;
+                    case CONTAINS:
+                        if (actual.contains(values[i])) return i;
+                        break;
+                    default:
+                        if (actual.startsWith(values[i])) return i;
+                }
+            }
+            return -1;
+        }
+
+        private String getAttribute(Component component) {
+            switch (key) {
+                case "text":
+                    if (component instanceof AbstractButton) return ((AbstractButton)component).getText();
+                    if (component instanceof JLabel) return ((JLabel)component).getText();
+                    return null;
+                case "name":
+                    return component.getName();
+                default:
+                    if (component instanceof Frame) return ((Frame)component).getTitle();
+                    if (component instanceof Dialog) return ((Dialog)component).getTitle();
+                    return null;
+            }
+        }
+    }
+
+    private static final class Compound {
+        // null matches any type; otherwise caches whether each class matches
+        ClassValue<Boolean> type;
+        final List<Attribute> attributes = new ArrayList<>();
+        boolean enabled;
+        boolean selected;
+        int nth = -1;
+        // whether this compound must match the parent of the next one
+        boolean child;
+
+        /*
+         * Returns -1 if the component doesn't match; otherwise returns the
+         * index of the value matched by the first attribute with alternative
+         * values (0 if there is no such attribute).
+         */
+        int match(Component component) {
+            if (type != null && !type.get(component.getClass())) return -1;
+            if (enabled && !component.isEnabled()) return -1;
+            if (selected && !(component instanceof AbstractButton && ((AbstractButton)component).isSelected())) return -1;
+            int rank = 0;
+            boolean ranked = false;
+            for (Attribute attribute : attributes) {
+                int index = attribute.match(component);
+                if (index < 0) return -1;
+                if (!ranked && attribute.values.length > 1) {
+                    rank = index;
+                    ranked = true;
+                }
+            }
+            return rank;
+        }
+    }
+
+    private final String source;
+    private final Compound[] compounds;
+
+    private ComponentSelector(String source, Compound[] compounds) {
+        this.source = source;
+        this.compounds = compounds;
+    }
+
+    /**
+     * Compiles a selector.
+     * @param selector
+     *  the selector
+     * @return
+     *  the compiled selector
+     * @throws IllegalArgumentException
+     *  the selector is invalid
+     */
+    static ComponentSelector compile(String selector) throws IllegalArgumentException {
+        return new Parser(selector).parse();
+    }
+
+    /**
+     * Returns the component below the specified container that the selector
+     * identifies, using a single traversal of the hierarchy. The traversal
+     * is done on the event dispatch thread.
+     * @param container
+     *  the Container to search in
+     * @return
+     *  the component, if it was found;  otherwise null
+     */
+    Component find(final Container container) {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            return SwingUtils.callOnEventDispatchThread(new Callable<Component>() {
+                @Override
+                public Component call() {
+                    return find(container);
+                }
+            });
+        }
+
+        final Compound last = compounds[compounds.length - 1];
+        final Component[] best = new Component[1];
+        final int[] bestRank = {Integer.MAX_VALUE};
+        final int[] count = {0};
+        ComponentTraversal.traverse(container, new ComponentTraversal.Visitor() {
+            @Override
+            public int visit(Component component, int depth) {
+                int rank = match(container, component);
+                if (rank < 0) return ComponentTraversal.CONTINUE;
+                if (last.nth >= 0) {
+                    if (count[0]++ < last.nth) return ComponentTraversal.CONTINUE;
+                    best[0] = component;
+                    return ComponentTraversal.STOP;
+                }
+                if (rank < bestRank[0]) {
+                    best[0] = component;
+                    bestRank[0] = rank;
+                }
+                return (rank == 0) ? ComponentTraversal.STOP : ComponentTraversal.CONTINUE;
+            }
+        });
+        return best[0];
+    }
+
+    /**
+     * Returns the component below the specified container that the selector
+     * identifies, provided that it is of the required type.
+     * @param container
+     *  the Container to search in
+     * @param type
+     *  the required type
+     * @return
+     *  the component, if it was found and is of the required type; 
+     *  otherwise null
+     */
+    <T> T find(Container container, Class<T> type) {
+        Component component = find(container);
+        return type.isInstance(component) ? type.cast(component) : null;
+    }
+
+    private int match(Container root, Component component) {
+        int rank = compounds[compounds.length - 1].match(component);
+        if (rank < 0) return -1;
+        return matchAncestors(root, component, compounds.length - 2) ? rank : -1;
+    }
+
+    /*
+     * Determines whether the ancestors of the component (up to and including
+     * root) satisfy the compound selectors up to the given index.
+     */
+    private boolean matchAncestors(Container root, Component component, int index) {
+        if (index < 0) return true;
+        Compound compound = compounds[index];
+        boolean child = compound.child;
+        Component ancestor = component;
+        while (ancestor != root) {
+            ancestor = ancestor.getParent();
+            if (ancestor == null) return false;
+            if (compound.match(ancestor) >= 0 && matchAncestors(root, ancestor, index - 1)) return true;
+            if (child) return false;
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    private static final class Parser {
+        private final String source;
+        private int pos;
+
+        Parser(String source) {
+            this.source = source;
+        }
+
+        ComponentSelector parse() {
+            List<Compound> compounds = new ArrayList<>();
+            skipWhitespace();
+            if (atEnd()) throw error("empty selector");
+            while (true) {
+                compounds.add(parseCompound());
+                boolean whitespace = skipWhitespace();
+                if (atEnd()) break;
+                boolean child = false;
+                if (peek() == '>') {
+                    pos++;
+                    skipWhitespace();
+                    child = true;
+                } else if (!whitespace) {
+                    throw error("unexpected '" + peek() + "'");
+                }
+                if (compounds.get(compounds.size() - 1).nth >= 0) throw error(":nth is only allowed at the end");
+                compounds.get(compounds.size() - 1).child = child;
+            }
+            return new ComponentSelector(source, compounds.toArray(new Compound[compounds.size()]));
+        }
+
+        private Compound parseCompound() {
+            Compound compound = new Compound();
+            int start = pos;
+            if (!atEnd() && peek() == '*') {
+                pos++;
+            } else {
+                String typeName = parseIdentifier(true);
+                if (!typeName.isEmpty()) compound.type = typeMatcher(typeName);
+            }
+            while (!atEnd()) {
+                if (peek() == '[') {
+                    pos++;
+                    compound.attributes.add(parseAttribute());
+                } else if (peek() == ':') {
+                    pos++;
+                    parsePseudoClass(compound);
+                } else {
+                    break;
+                }
+            }
+            if (pos == start) throw error("selector expected");
+            return compound;
+        }
+
+        private Attribute parseAttribute() {
+            skipWhitespace();
+            String key = parseIdentifier(false);
+            if (!key.equals("text") && !key.equals("name") && !key.equals("title")) throw error("unknown attribute '" + key + "'");
+            skipWhitespace();
+            int operator;
+            if (source.startsWith("=", pos)) {
+                operator = EQUALS;
+                pos += 1;
+            } else if (source.startsWith("*=", pos)) {
+                operator = CONTAINS;
+                pos += 2;
+            } else if (source.startsWith("^=", pos)) {
+                operator = STARTS_WITH;
+                pos += 2;
+            } else {
+                throw error("'=', '*=' or '^=' expected");
+            }
+            List<String> values = new ArrayList<>();
+            while (true) {
+                skipWhitespace();
+                values.add(parseQuoted());
+                skipWhitespace();
+                if (atEnd()) throw error("']' expected");
+                if (peek() == ']') {
+                    pos++;
+                    break;
+                }
+                if (peek() != '|') throw error("'|' or ']' expected");
+                pos++;
+            }
+            return new Attribute(key, operator, values.toArray(new String[values.size()]));
+        }
+
+        private void parsePseudoClass(Compound compound) {
+            String name = parseIdentifier(false);
+            switch (name) {
+                case "enabled":
+                    compound.enabled = true;
+                    break;
+                case "selected":
+                    compound.selected = true;
+                    break;
+                case "nth":
+                    if (atEnd() || peek() != '(') throw error("'(' expected");
+                    pos++;
+                    int start = pos;
+                    while (!atEnd() && Character.isDigit(peek())) pos++;
+                    if (pos == start) throw error("number expected");
+                    compound.nth = Integer.parseInt(source.substring(start, pos));
+                    if (atEnd() || peek() != ')') throw error("')' expected");
+                    pos++;
+                    break;
+                default:
+                    throw error("unknown pseudo-class ':" + name + "'");
+            }
+        }
+
+        private String parseIdentifier(boolean qualified) {
+            int start = pos;
+            while (!atEnd() && (Character.isJavaIdentifierPart(peek()) || (qualified && peek() == '.'))) pos++;
+            return source.substring(start, pos);
+        }
+
+        private String parseQuoted() {
+            if (atEnd() || (peek() != '\'' && peek() != '"')) throw error("quoted value expected");
+            char quote = source.charAt(pos++);
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                if (atEnd()) throw error("unterminated value");
+                char c = source.charAt(pos++);
+                if (c == quote) return sb.toString();
+                if (c == '\\') {
+                    if (atEnd()) throw error("unterminated value");
+                    c = source.charAt(pos++);
+                }
+                sb.append(c);
+            }
+        }
+
+        private boolean skipWhitespace() {
+            int start = pos;
+            while (!atEnd() && Character.isWhitespace(peek())) pos++;
+            return pos > start;
+        }
+
+        private boolean atEnd() {
+            return pos >= source.length();
+        }
+
+        private char peek() {
+            return source.charAt(pos);
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("invalid selector \"" + source + "\" at position " + pos + ": " + message);
+        }
+    }
+
+    private static ClassValue<Boolean> typeMatcher(final String typeName) {
+        return new ClassValue<Boolean>() {
+            @Override
+            protected Boolean computeValue(Class<?> type) {
+                for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+                    if (c.getSimpleName().equals(typeName) || c.getName().equals(typeName)) return true;
+                }
+                return false;
+            }
+        };
+    }
+
+}
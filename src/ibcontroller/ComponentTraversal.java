@@ -0,0 +1,186 @@
+// This file is part of the "IBController".
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2016 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBController is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBController is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBController.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package ibcontroller;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.util.Arrays;
+
+/**
+ * Walks a container hierarchy, calling a {@link Visitor} for each component
+ * in depth-first order (the same order as {@link ComponentIterator}).
+ * 
+ * Unlike Container.getComponents(), which copies the child array for every
+ * container visited, the traversal uses getComponentCount() and 
+ * getComponent(i) with a primitive index stack, and the stack is reused by
+ * subsequent traversals on the same thread, so that a traversal does not 
+ * allocate any memory once the stack has grown to the depth of the 
+ * hierarchy.
+ * 
+ * As with the rest of Swing, the hierarchy should only be traversed on the
+ * event dispatch thread. Components added or removed during a traversal
+ * (for example by the visitor) may or may not be visited.
+ */
+final class ComponentTraversal {
+
+    /**
+     * Visits each component in a traversal.
+     */
+    interface Visitor {
+        /**
+         * Called for each component in the hierarchy.
+         * @param component
+         *  the component
+         * @param depth
+         *  the component's depth below the root container: the root's 
+         *  immediate children have depth 1
+         * @return
+         *  {@link #CONTINUE}, {@link #SKIP_CHILDREN} or {@link #STOP}
+         */
+        int visit(Component component, int depth);
+    }
+
+    /**
+     * Returned by a visitor to continue the traversal normally.
+     */
+    static final int CONTINUE = 0;
+
+    /**
+     * Returned by a visitor to continue the traversal without visiting the
+     * component's descendants.
+     */
+    static final int SKIP_CHILDREN = 1;
+
+    /**
+     * Returned by a visitor to end the traversal.
+     */
+    static final int STOP = 2;
+
+    /**
+     * The depth limit that visits the whole hierarchy.
+     */
+    static final int UNLIMITED_DEPTH = Integer.MAX_VALUE;
+
+    private static final ThreadLocal<ComponentTraversal> reusable = new ThreadLocal<ComponentTraversal>() {
+        @Override
+        protected ComponentTraversal initialValue() {
+            return new ComponentTraversal();
+        }
+    };
+
+    private Container[] containers = new Container[16];
+    private int[] indices = new int[16];
+    private int top = -1;
+    private boolean inUse;
+
+    private ComponentTraversal() {
+    }
+
+    /**
+     * Visits every component below the specified container.
+     * @param root
+     *  the Container whose descendants are to be visited (this may be null,
+     *  in which case nothing is visited)
+     * @param visitor
+     *  the visitor
+     * @return
+     *  true if the visitor ended the traversal by returning {@link #STOP};
+     *  otherwise false
+     */
+    static boolean traverse(Container root, Visitor visitor) {
+        return traverse(root, UNLIMITED_DEPTH, visitor);
+    }
+
+    /**
+     * Visits the components below the specified container, down to the
+     * specified depth.
+     * @param root
+     *  the Container whose descendants are to be visited (this may be null,
+     *  in which case nothing is visited)
+     * @param maxDepth
+     *  the depth of the deepest components to be visited: 1 visits only the
+     *  root's immediate children
+     * @param visitor
+     *  the visitor
+     * @return
+     *  true if the visitor ended the traversal by returning {@link #STOP};
+     *  otherwise false
+     */
+    static boolean traverse(Container root, int maxDepth, Visitor visitor) {
+        if (root == null || maxDepth < 1) return false;
+
+        ComponentTraversal traversal = reusable.get();
+        // a visitor may itself start a traversal
+        if (traversal.inUse) traversal = new ComponentTraversal();
+
+        traversal.inUse = true;
+        try {
+            return traversal.walk(root, maxDepth, visitor);
+        } finally {
+            traversal.clear();
+            traversal.inUse = false;
+        }
+    }
+
+    private boolean walk(Container root, int maxDepth, Visitor visitor) {
+        push(root);
+        while (top >= 0) {
+            Container container = containers[top];
+            int i = indices[top];
+            if (i >= container.getComponentCount()) {
+                containers[top--] = null;
+                continue;
+            }
+            indices[top] = i + 1;
+
+            Component component;
+            try {
+                component = container.getComponent(i);
+            } catch (ArrayIndexOutOfBoundsException e) {
+                // a component has been removed since getComponentCount()
+                continue;
+            }
+
+            int depth = top + 1;
+            int action = visitor.visit(component, depth);
+            if (action == STOP) return true;
+            if (action == CONTINUE && depth < maxDepth && component instanceof Container) {
+                push((Container)component);
+            }
+        }
+        return false;
+    }
+
+    private void push(Container container) {
+        if (++top == containers.length) {
+            containers = Arrays.copyOf(containers, top * 2);
+            indices = Arrays.copyOf(indices, top * 2);
+        }
+        containers[top] = container;
+        indices[top] = 0;
+    }
+
+    private void clear() {
+        // don't hold on to the components of a traversal that was stopped
+        if (top >= 0) Arrays.fill(containers, 0, top + 1, null);
+        top = -1;
+    }
+
+}
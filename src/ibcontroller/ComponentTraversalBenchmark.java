@@ -0,0 +1,153 @@
+// This file is part of the "IBController".
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2016 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBController is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBController is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBController.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package ibcontroller;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
+
+/**
+ * Measures the time taken, and the memory allocated, by a traversal of a 
+ * synthetic component hierarchy, using the original getComponents()-based 
+ * approach, {@link ComponentIterator} and {@link ComponentTraversal}.
+ * 
+ * Usage:
+ * 
+ *     java -cp IBController.jar ibcontroller.ComponentTraversalBenchmark [components [iterations]]
+ * 
+ * where components is the approximate number of components in the 
+ * hierarchy (default 5000) and iterations is the number of traversals 
+ * measured for each approach (default 2000). The hierarchy is built from 
+ * lightweight components only, so no display is needed.
+ * 
+ * Allocation is measured with the HotSpot-specific ThreadMXBean extension; 
+ * if that isn't available, only times are reported.
+ */
+public class ComponentTraversalBenchmark {
+
+    private static final int FANOUT = 6;
+
+    private static int visited;
+
+    public static void main(final String[] args) throws Exception {
+        final int components = (args.length > 0) ? Integer.parseInt(args[0]) : 5000;
+        final int iterations = (args.length > 1) ? Integer.parseInt(args[1]) : 2000;
+
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override
+            public void run() {
+                JPanel root = new JPanel();
+                int count = build(root, components, 1);
+                Utils.logRawToConsole("Hierarchy of " + count + " components; " + iterations + " traversals per approach");
+
+                final ComponentTraversal.Visitor visitor = new ComponentTraversal.Visitor() {
+                    @Override
+                    public int visit(Component component, int depth) {
+                        visited++;
+                        return ComponentTraversal.CONTINUE;
+                    }
+                };
+
+                for (int pass = 0; pass < 2; pass++) {
+                    // the first pass warms up the JIT and is not reported
+                    boolean report = (pass == 1);
+                    measure("getComponents", root, iterations, report, new Runnable() {
+                        @Override
+                        public void run() {
+                            copyingTraversal(root);
+                        }
+                    });
+                    measure("ComponentIterator", root, iterations, report, new Runnable() {
+                        @Override
+                        public void run() {
+                            ComponentIterator iter = new ComponentIterator(root);
+                            while (iter.hasNext()) {
+                                iter.next();
+                                visited++;
+                            }
+                        }
+                    });
+                    measure("ComponentTraversal", root, iterations, report, new Runnable() {
+                        @Override
+                        public void run() {
+                            ComponentTraversal.traverse(root, visitor);
+                        }
+                    });
+                }
+            }
+        });
+        System.exit(0);
+    }
+
+    /*
+     * Builds a hierarchy of nested panels, each containing a few leaf
+     * components, and returns the number of components added.
+     */
+    private static int build(Container container, int remaining, int level) {
+        int count = 0;
+        container.add(new JLabel("Label " + level));
+        container.add(new JTextField());
+        container.add(new JButton("Button " + level));
+        count += 3;
+        for (int i = 0; i < FANOUT && count < remaining; i++) {
+            JPanel panel = new JPanel();
+            container.add(panel);
+            count++;
+            count += build(panel, (remaining - count) / (FANOUT - i), level + 1);
+        }
+        return count;
+    }
+
+    // the approach used by ComponentIterator before it was reworked
+    private static void copyingTraversal(Container container) {
+        for (Component component : container.getComponents()) {
+            visited++;
+            if (component instanceof Container) copyingTraversal((Container)component);
+        }
+    }
+
+    private static void measure(String name, Container root, int iterations, boolean report, Runnable traversal) {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean allocationBean = 
+                (bean instanceof com.sun.management.ThreadMXBean) ? (com.sun.management.ThreadMXBean)bean : null;
+        long threadId = Thread.currentThread().getId();
+
+        visited = 0;
+        long startBytes = (allocationBean != null) ? allocationBean.getThreadAllocatedBytes(threadId) : 0;
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < iterations; i++) traversal.run();
+        long nanos = System.nanoTime() - startNanos;
+        long bytes = (allocationBean != null) ? allocationBean.getThreadAllocatedBytes(threadId) - startBytes : -1;
+
+        if (!report) return;
+        Utils.logRawToConsole(String.format("%-20s %10.1f us/traversal %12s bytes/traversal  (%d components visited)",
+                                            name,
+                                            nanos / 1000.0 / iterations,
+                                            (bytes < 0) ? "n/a" : String.valueOf(bytes / iterations),
+                                            visited / iterations));
+    }
+
+}
@@ -18,7 +18,11 @@
 
 package ibcontroller;
 
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.swing.JDialog;
 
 public class ConfigurationTask {
@@ -30,28 +34,121 @@ public class ConfigurationTask {
     }
     
     public void executeAsync() {
-        MyCachedThreadPool.getInstance().execute(new ConfigTaskRunner());
+        MyCachedThreadPool.getInstance().execute(new ConfigTaskRunner(Deadline.NONE));
     }
     
     public void execute() {
-        (new ConfigTaskRunner()).run();
+        (new ConfigTaskRunner(Deadline.NONE)).run();
+    }
+    
+    /**
+     * Runs the configuration action on the current thread, giving up if it
+     * has not completed by the specified deadline.
+     * @param deadline
+     * the time by which the action must complete
+     * @throws IBControllerException
+     * the config dialog could not be obtained
+     * @throws TimeoutException 
+     * the deadline expired
+     */
+    void execute(Deadline deadline) throws IBControllerException, TimeoutException {
+        (new ConfigTaskRunner(deadline)).runWithinDeadline();
     }
     
     private class ConfigTaskRunner implements Runnable {
+        private final Deadline deadline;
+        
+        ConfigTaskRunner(Deadline deadline) {
+            this.deadline = deadline;
+        }
+        
         @Override
         public void run() {
             try {
-                final JDialog configDialog = ConfigDialogManager.configDialogManager().getConfigDialog();    // blocks the thread until the config dialog is available
-                configAction.initialise(configDialog);
-       
-                FutureTask<?> t = new FutureTask<>((Runnable)configAction, null);
-                GuiExecutor.instance().execute(t);
-                t.get();
-                ConfigDialogManager.configDialogManager().releaseConfigDialog();
+                runWithinDeadline();
             } catch (Exception e){
                 Utils.logException(e);
             }
         }
+        
+        void runWithinDeadline() throws IBControllerException, TimeoutException {
+            final ConfigDialogManager manager = ConfigDialogManager.configDialogManager();
+            
+            // blocks the thread until the config dialog is available or the deadline expires
+            final JDialog configDialog = manager.getConfigDialog(deadline.remaining(TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS);
+            boolean release = true;
+            try {
+                if (configDialog == null) {
+                    if (deadline.isExpired()) throw new TimeoutException("timed out waiting for the config dialog");
+                    throw new IBControllerException("config dialog is not available");
+                }
+                configAction.initialise(configDialog);
+
+                GuardedAction action = new GuardedAction(manager);
+                FutureTask<?> t = new FutureTask<>(action, null);
+                GuiExecutor.instance().execute(t);
+                try {
+                    deadline.get(t);
+                    EventPublisher.getInstance().publish(EventPublisher.LIFECYCLE, "CONFIGURED " + configAction.getClass().getSimpleName());
+                } catch (TimeoutException e) {
+                    // if the action is still running, it releases the dialog 
+                    // when it finishes
+                    release = action.abandon();
+                    throw e;
+                }
+            } catch (InterruptedException e) {
+                throw new IBControllerException("interrupted");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+                if (cause instanceof Error) throw (Error)cause;
+                throw new IllegalStateException(cause);
+            } finally {
+                if (release) manager.releaseConfigDialog();
+            }
+        }
+    }
+
+    /*
+     * Runs the configuration action unless it has been abandoned because 
+     * the deadline expired before it started. If it is abandoned while it is
+     * running, it releases the config dialog when it finishes, so that the 
+     * dialog isn't closed while the action is still changing it.
+     */
+    private class GuardedAction implements Runnable {
+        private static final int NOT_STARTED = 0;
+        private static final int RUNNING = 1;
+        private static final int FINISHED = 2;
+        private static final int ABANDONED = 3;
+
+        private final ConfigDialogManager manager;
+        private final AtomicInteger state = new AtomicInteger(NOT_STARTED);
+
+        GuardedAction(ConfigDialogManager manager) {
+            this.manager = manager;
+        }
+
+        @Override
+        public void run() {
+            if (!state.compareAndSet(NOT_STARTED, RUNNING)) return;
+            try {
+                configAction.run();
+            } finally {
+                if (!state.compareAndSet(RUNNING, FINISHED)) manager.releaseConfigDialog();
+            }
+        }
+
+        /**
+         * Abandons the action.
+         * @return
+         * true if the caller must release the config dialog, because the 
+         * action has either not started or already finished; false if the 
+         * action will release it when it finishes
+         */
+        boolean abandon() {
+            if (state.compareAndSet(NOT_STARTED, ABANDONED)) return true;
+            return !state.compareAndSet(RUNNING, ABANDONED);
+        }
     }
 
     
@@ -24,6 +24,9 @@ import javax.swing.*;
 
 class ConfigureTwsApiPortTask implements ConfigurationAction{
     
+    private static final ComponentSelector SOCKET_PORT_FIELD = 
+            ComponentSelector.compile("JTextField:nth(0)");
+    
     private final int portNumber;
     private JDialog configDialog;
     
@@ -40,10 +43,11 @@ class ConfigureTwsApiPortTask implements ConfigurationAction{
                 // older versions of TWS don't have the Settings node below the API node
                 Utils.selectConfigSection(configDialog, new String[] {"API"});
 
-            Component comp = SwingUtils.findComponent(configDialog, "Socket port");
-            if (comp == null) throw new IBControllerException("could not find socket port component");
+            LiveComponentIndex index = LiveComponentIndex.forWindow(configDialog);
+            Component comp = index.findComponent("Socket port");
+            if (!(comp instanceof Container)) throw new IBControllerException("could not find socket port component");
 
-            JTextField tf = SwingUtils.findTextField((Container)comp, 0);
+            JTextField tf = SOCKET_PORT_FIELD.find((Container)comp, JTextField.class);
             if (tf == null) throw new IBControllerException("could not find socket port field");
             
             int currentPort = Integer.parseInt(tf.getText());
@@ -51,7 +55,7 @@ class ConfigureTwsApiPortTask implements ConfigurationAction{
                 Utils.logToConsole("TWS API socket port is already set to " + tf.getText());
             } else {
                 if (!MainWindowManager.mainWindowManager().isGateway()) {
-                    JCheckBox cb = SwingUtils.findCheckBox(configDialog, "Enable ActiveX and Socket Clients");
+                    JCheckBox cb = index.findCheckBox("Enable ActiveX and Socket Clients");
                     if (cb == null) throw new IBControllerException("could not find Enable ActiveX checkbox");
                     if (cb.isSelected()) ConfigDialogManager.configDialogManager().setApiConfigChangeConfirmationExpected();
                 }
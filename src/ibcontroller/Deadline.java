@@ -0,0 +1,120 @@
+// This file is part of the "IBController".
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2016 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBController is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBController is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBController.  If not, see <http://www.gnu.org/licenses/>.
+
+package ibcontroller;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A point in time by which an operation must complete.
+ * 
+ * Deadlines are passed down through the layers that execute a command, so that
+ * each blocking wait (for the main window, the config dialog, a task on the 
+ * event dispatch thread, etc) only waits for as long as is left of the time 
+ * allowed for the command as a whole.
+ */
+final class Deadline {
+
+    /**
+     * A deadline that never expires.
+     */
+    static final Deadline NONE = new Deadline(0, true);
+
+    private final long expiry;
+    private final boolean unbounded;
+
+    private Deadline(long expiry, boolean unbounded) {
+        this.expiry = expiry;
+        this.unbounded = unbounded;
+    }
+
+    /**
+     * Returns a deadline that expires after the specified time.
+     * @param timeout
+     * the time allowed; if this is zero or negative, the deadline never expires
+     * @param unit
+     * the units of timeout
+     * @return
+     * the deadline
+     */
+    static Deadline after(long timeout, TimeUnit unit) {
+        if (timeout <= 0) return NONE;
+        return new Deadline(System.nanoTime() + unit.toNanos(timeout), false);
+    }
+
+    /**
+     * Returns whichever of this and another deadline expires first.
+     * @param other
+     * the other deadline
+     * @return 
+     * the earlier deadline
+     */
+    Deadline earliest(Deadline other) {
+        if (other.unbounded) return this;
+        if (unbounded) return other;
+        return (other.expiry - expiry < 0) ? other : this;
+    }
+
+    /**
+     * Waits if necessary until the deadline for the specified Future to complete.
+     * @param <T>
+     * the Future's result type
+     * @param future
+     * the Future to wait for
+     * @return
+     * the Future's result
+     * @throws InterruptedException
+     * @throws ExecutionException
+     * @throws TimeoutException 
+     * the deadline expired before the Future completed
+     */
+    <T> T get(Future<T> future) throws InterruptedException, ExecutionException, TimeoutException {
+        if (unbounded) return future.get();
+        return future.get(remaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+    }
+
+    boolean isExpired() {
+        return !unbounded && expiry - System.nanoTime() <= 0;
+    }
+
+    boolean isUnbounded() {
+        return unbounded;
+    }
+
+    /**
+     * Returns the time remaining before the deadline expires.
+     * 
+     * The result can be passed directly to methods such as 
+     * MainWindowManager.getMainWindow(long, TimeUnit), for which a negative 
+     * timeout means wait indefinitely.
+     * @param unit
+     * the units for the result
+     * @return
+     * the time remaining, which is zero if the deadline has expired, and 
+     * -1 if the deadline never expires
+     */
+    long remaining(TimeUnit unit) {
+        if (unbounded) return -1;
+        long remaining = expiry - System.nanoTime();
+        return (remaining <= 0) ? 0 : unit.convert(remaining, TimeUnit.NANOSECONDS);
+    }
+
+}
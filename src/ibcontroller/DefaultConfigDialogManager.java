@@ -150,6 +150,7 @@ public class DefaultConfigDialogManager extends ConfigDialogManager {
     @Override
     public void setConfigDialog(JDialog window) {
         configDialog = window;
+        EventPublisher.getInstance().publish(EventPublisher.LIFECYCLE, "CONFIGDIALOG");
         if (configDialogTask == null) {
             // config dialog opened by user
             incrementUsage();
@@ -192,11 +193,16 @@ public class DefaultConfigDialogManager extends ConfigDialogManager {
         usageCount++;
     }
     
-    private synchronized void decrementUsage() {
-        usageCount--;
-        if (usageCount == 0){
-            SwingUtils.clickButton(configDialog, "OK");
+    private void decrementUsage() {
+        // the button is clicked outside the lock, because clicking it waits
+        // for the event dispatch thread, which may itself be waiting for the 
+        // lock in incrementUsage()
+        JDialog dialog;
+        synchronized (this) {
+            usageCount--;
+            dialog = (usageCount == 0) ? configDialog : null;
         }
+        if (dialog != null) LiveComponentIndex.forWindow(dialog).clickButton("OK");
     }
             
 
@@ -137,20 +137,34 @@ public class DefaultMainWindowManager extends MainWindowManager {
         return getMainWindow(-1, TimeUnit.MILLISECONDS);
     }
     
+    @Override
+    public boolean hasMainWindow() {
+        return mainWindow != null;
+    }
+
     @Override
     public boolean isGateway() {
         return this.isGateway;
     };
     
     @Override
-    public void setMainWindow(JFrame window) {
+    public void setMainWindow(final JFrame window) {
         Utils.logToConsole("Found " + (isGateway ? "Gateway" : "TWS") + " main window");
         mainWindow = window;
+        LiveComponentIndex.forWindow(window);
         if (mainWindowTask != null) mainWindowTask.setMainWindow(window);
         mainWindowTask = null;
         mainWindowFuture = null;
+        EventPublisher.getInstance().publish(EventPublisher.LIFECYCLE, "MAINWINDOW");
                 
-        if (Settings.settings().getBoolean("MinimizeMainWindow", false)) mainWindow.setExtendedState(java.awt.Frame.ICONIFIED);
+        if (Settings.settings().getBoolean("MinimizeMainWindow", false)) {
+            GuiExecutor.instance().execute(new Runnable() {
+                @Override
+                public void run() {
+                    window.setExtendedState(java.awt.Frame.ICONIFIED);
+                }
+            });
+        }
     }
     
 }
@@ -0,0 +1,102 @@
+// This file is part of the "IBController".
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2016 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBController is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBController is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBController.  If not, see <http://www.gnu.org/licenses/>.
+
+package ibcontroller;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Takes snapshots of IBController's state, for reporting via the command
+ * server and the HTTP control server.
+ * 
+ * Snapshots are returned as ordered maps of names to values, which can be
+ * converted to JSON using the Json class.
+ */
+final class Diagnostics {
+
+    private Diagnostics() {}
+
+    /**
+     * Returns a snapshot of IBController's operational status.
+     * @param isGateway
+     * true if IBController is running the Gateway; false if it is running TWS
+     * @return
+     * the status
+     */
+    static Map<String, Object> status(boolean isGateway) {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("gateway", isGateway);
+        status.put("mainWindowAvailable", MainWindowManager.mainWindowManager().hasMainWindow());
+        status.put("stopping", StopTask.shutdownInProgress());
+        status.put("jobs", CommandJobTable.getInstance().size());
+        status.put("uptimeSeconds", ManagementFactory.getRuntimeMXBean().getUptime() / 1000);
+        return status;
+    }
+
+    /**
+     * Returns a snapshot of resource usage and activity counters.
+     * @return
+     * the metrics
+     */
+    static Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("memory", memory());
+        metrics.put("threads", threads());
+        metrics.put("threadPool", threadPool());
+        metrics.put("http", HttpControlServer.metrics());
+        metrics.put("eventSubscribers", EventPublisher.getInstance().subscriberCount());
+        metrics.put("commands", CommandRegistry.getInstance().getStatistics());
+        metrics.put("windowEvents", TwsListener.getStatistics());
+        metrics.put("windowHandlers", WindowHandlerMetrics.getInstance().getStatistics());
+        metrics.put("windowRecognitionCache", WindowRecognitionCache.getInstance().getStatistics());
+        metrics.put("menuPathIndex", MenuPathIndex.getInstance().getStatistics());
+        return metrics;
+    }
+
+    private static Map<String, Object> memory() {
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        Map<String, Object> memory = new LinkedHashMap<>();
+        memory.put("heapUsed", heap.getUsed());
+        memory.put("heapCommitted", heap.getCommitted());
+        memory.put("heapMax", heap.getMax());
+        return memory;
+    }
+
+    private static Map<String, Object> threads() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        Map<String, Object> threads = new LinkedHashMap<>();
+        threads.put("live", threadBean.getThreadCount());
+        threads.put("daemon", threadBean.getDaemonThreadCount());
+        threads.put("peak", threadBean.getPeakThreadCount());
+        return threads;
+    }
+
+    private static Map<String, Object> threadPool() {
+        Map<String, Object> pool = new LinkedHashMap<>();
+        pool.put("virtualThreads", MyCachedThreadPool.usesVirtualThreads());
+        pool.put("activeTasks", MyCachedThreadPool.getActiveCount());
+        pool.put("completedTasks", MyCachedThreadPool.getCompletedTaskCount());
+        if (!MyCachedThreadPool.usesVirtualThreads()) pool.put("platformThreads", MyCachedThreadPool.getPoolSize());
+        return pool;
+    }
+
+}
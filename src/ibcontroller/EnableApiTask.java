@@ -39,12 +39,13 @@ class EnableApiTask implements ConfigurationAction{
                 // older versions of TWS don't have the Settings node below the API node
                 Utils.selectConfigSection(configDialog, new String[] {"API"});
 
-            JCheckBox cb = SwingUtils.findCheckBox(configDialog, "Enable ActiveX and Socket Clients");
+            LiveComponentIndex index = LiveComponentIndex.forWindow(configDialog);
+            JCheckBox cb = index.findCheckBox("Enable ActiveX and Socket Clients");
             if (cb == null) throw new IBControllerException("could not find Enable ActiveX checkbox");
 
             if (!cb.isSelected()) {
                 cb.doClick();
-                SwingUtils.clickButton(configDialog, "OK");
+                index.clickButton("OK");
                 Utils.logToConsole("TWS has been configured to accept API connections");
                 mChannel.writeAck("configured");
             } else {
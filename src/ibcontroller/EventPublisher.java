@@ -0,0 +1,232 @@
+// This file is part of the "IBController".
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2016 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBController is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBController is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBController.  If not, see <http://www.gnu.org/licenses/>.
+
+package ibcontroller;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Distributes lifecycle and window events to command channels that have 
+ * issued the SUBSCRIBE command.
+ * 
+ * Each event belongs to a category (WINDOW or LIFECYCLE) and is sent to 
+ * subscribers as a line of the form:
+ * 
+ *      EVENT <category> <event details>
+ * 
+ * Publishing an event never blocks the publisher (which is often the Swing
+ * event dispatch thread): each subscriber has a bounded queue that is 
+ * written to its channel by a pooled thread. If a subscriber falls behind 
+ * and its queue is full, the oldest queued events are discarded, and the 
+ * subscriber is sent 'EVENT DROPPED <n>' before the next event it receives.
+ * 
+ * Events are also held in the subscriber's queue (and so are subject to the
+ * same limit) while the channel reports that its output is backlogged, so 
+ * that a client that stops reading can't make the channel's own output 
+ * buffer grow without limit.
+ * 
+ * The queue length is set by the EventQueueLength setting.
+ */
+class EventPublisher {
+
+    static final String WINDOW = "WINDOW";
+    static final String LIFECYCLE = "LIFECYCLE";
+
+    private static final EventPublisher instance = new EventPublisher();
+
+    private final int queueLength = Math.max(1, Settings.settings().getInt("EventQueueLength", 100));
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    private EventPublisher() {}
+
+    static EventPublisher getInstance() {return instance;}
+
+    /**
+     * Starts sending events to a channel.
+     * @param connection
+     * the channel for the client's connection, which is used to identify the 
+     * subscription
+     * @param output
+     * the channel that events are written to (for example a TaggedCommandChannel
+     * that wraps connection)
+     * @param categories
+     * the categories of event required
+     * @return
+     * false if the connection already has a subscription; otherwise true
+     */
+    synchronized boolean subscribe(CommandChannel connection, CommandChannel output, Set<String> categories) {
+        for (Subscriber s : subscribers) {
+            if (s.connection == connection) return false;
+        }
+        subscribers.add(new Subscriber(connection, output, categories, queueLength));
+        return true;
+    }
+
+    /**
+     * Stops sending events to a connection. This must be called when a 
+     * subscribed connection is closed.
+     * @param connection
+     * the channel for the client's connection
+     * @return
+     * true if the connection had a subscription; otherwise false
+     */
+    synchronized boolean unsubscribe(CommandChannel connection) {
+        for (Subscriber s : subscribers) {
+            if (s.connection == connection) {
+                s.close();
+                subscribers.remove(s);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sends an event to all interested subscribers.
+     * @param category
+     * the event's category
+     * @param event
+     * the event details
+     */
+    void publish(String category, String event) {
+        if (subscribers.isEmpty()) return;
+        String line = category + " " + event;
+        for (Subscriber s : subscribers) {
+            if (s.categories.contains(category)) s.offer(line);
+        }
+    }
+
+    /**
+     * Resumes sending events to a connection whose output was backlogged.
+     * @param connection
+     * the channel for the client's connection
+     */
+    void outputDrained(CommandChannel connection) {
+        for (Subscriber s : subscribers) {
+            if (s.connection == connection) s.resume();
+        }
+    }
+
+    int subscriberCount() {
+        return subscribers.size();
+    }
+
+    private static final class Subscriber implements Runnable {
+        final CommandChannel connection;
+        final CommandChannel output;
+        final Set<String> categories;
+
+        private final int capacity;
+        private final Deque<String> queue = new ArrayDeque<>();
+        private int dropped;
+        private boolean draining;
+        private boolean blocked;    // waiting for the output to drain
+        private boolean closed;
+
+        Subscriber(CommandChannel connection, CommandChannel output, Set<String> categories, int capacity) {
+            this.connection = connection;
+            this.output = output;
+            this.categories = categories;
+            this.capacity = capacity;
+        }
+
+        void offer(String line) {
+            synchronized (this) {
+                if (closed) return;
+                if (queue.size() == capacity) {
+                    queue.poll();
+                    dropped++;
+                }
+                queue.add(line);
+                if (draining || blocked) return;
+                draining = true;
+            }
+            startDraining();
+        }
+
+        void resume() {
+            synchronized (this) {
+                if (!blocked) return;
+                blocked = false;
+                if (draining || closed || (queue.isEmpty() && dropped == 0)) return;
+                draining = true;
+            }
+            startDraining();
+        }
+
+        private void startDraining() {
+            try {
+                MyCachedThreadPool.getInstance().execute(this);
+            } catch (RejectedExecutionException e) {
+                // shutting down
+                synchronized (this) {draining = false;}
+            }
+        }
+
+        synchronized void close() {
+            closed = true;
+            queue.clear();
+        }
+
+        @Override
+        public void run() {
+            for (;;) {
+                if (output.isOutputBacklogged()) {
+                    synchronized (this) {
+                        blocked = true;
+                    }
+                    // the output may have drained before blocked was set, in 
+                    // which case there will be no call to resume()
+                    if (output.isOutputBacklogged()) {
+                        synchronized (this) {
+                            if (blocked) {
+                                draining = false;
+                                return;
+                            }
+                        }
+                    } else {
+                        synchronized (this) {
+                            blocked = false;
+                        }
+                    }
+                }
+
+                String line;
+                synchronized (this) {
+                    if (dropped > 0) {
+                        line = "DROPPED " + dropped;
+                        dropped = 0;
+                    } else {
+                        line = queue.poll();
+                    }
+                    if (line == null || closed) {
+                        draining = false;
+                        return;
+                    }
+                }
+                output.reply("EVENT " + line, true);
+            }
+        }
+    }
+
+}
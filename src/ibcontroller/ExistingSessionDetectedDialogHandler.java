@@ -23,6 +23,11 @@ import java.awt.event.WindowEvent;
 import javax.swing.JDialog;
 
 public class ExistingSessionDetectedDialogHandler implements WindowHandler {
+    private static final ComponentSelector PRIMARY_BUTTON = 
+            ComponentSelector.compile("JButton[text='OK'|'Continue Login'|'Reconnect This Session']");
+    private static final ComponentSelector SECONDARY_BUTTON = 
+            ComponentSelector.compile("JButton[text='Cancel'|'Exit Application']");
+
     public boolean filterEvent(Window window, int eventId) {
         switch (eventId) {
             case WindowEvent.WINDOW_OPENED:
@@ -36,14 +41,12 @@ public class ExistingSessionDetectedDialogHandler implements WindowHandler {
         String setting = Settings.settings().getString("ExistingSessionDetectedAction", "manual");
         if (setting.equalsIgnoreCase("primary")) {
             Utils.logToConsole("End the other session and continue this one");
-            if (!SwingUtils.clickButton(window, "OK") && 
-                    !SwingUtils.clickButton(window, "Continue Login") &&
-                    !SwingUtils.clickButton(window, "Reconnect This Session"))  {
+            if (!SwingUtils.clickButton(window, PRIMARY_BUTTON))  {
                 Utils.logError("could not handle 'Existing session detected' dialog because the 'OK' or 'Continue Login' or 'Reconnect This Session' button wasn't found.");
             }
         } else if (setting.equalsIgnoreCase("secondary")) {
             Utils.logToConsole("End this session and let the other session proceed");
-            if (!SwingUtils.clickButton(window, "Cancel") && !SwingUtils.clickButton(window, "Exit Application")) {
+            if (!SwingUtils.clickButton(window, SECONDARY_BUTTON)) {
                 Utils.logError("could not handle 'Existing session detected' dialog because the 'Cancel' or 'Exit Application' button wasn't found.");
             }
         } else if (setting.equalsIgnoreCase("manual")) {
@@ -54,6 +57,10 @@ public class ExistingSessionDetectedDialogHandler implements WindowHandler {
         }
     }
 
+    public WindowHandlerHints getHints() {
+        return WindowHandlerHints.forDialogs().onEvents(WindowEvent.WINDOW_OPENED).withTitlesContaining("Existing session detected");
+    }
+
     public boolean recogniseWindow(Window window) {
         if (! (window instanceof JDialog)) return false;
 
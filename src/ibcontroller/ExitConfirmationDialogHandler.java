@@ -41,6 +41,10 @@ public class ExitConfirmationDialogHandler implements WindowHandler {
         }
     }
 
+    public WindowHandlerHints getHints() {
+        return WindowHandlerHints.forDialogs().onEvents(WindowEvent.WINDOW_OPENED);
+    }
+
     public boolean recogniseWindow(Window window) {
         if (! (window instanceof JDialog)) return false;
 
@@ -20,6 +20,7 @@ package ibcontroller;
 
 import java.awt.Window;
 import java.awt.event.WindowEvent;
+import java.lang.ref.WeakReference;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
@@ -27,7 +28,8 @@ import javax.swing.JFrame;
 
 class ExitSessionFrameHandler implements WindowHandler {
     
-    private JFrame exitSessionFrame = null;
+    // a weak reference, so that the frame can be garbage collected once it's closed
+    private WeakReference<JFrame> exitSessionFrame = new WeakReference<>(null);
 
     public boolean filterEvent(Window window, int eventId) {
         switch (eventId) {
@@ -41,7 +43,7 @@ class ExitSessionFrameHandler implements WindowHandler {
 
     public void handleWindow(Window window, int eventID) {
         if (eventID == WindowEvent.WINDOW_OPENED) {
-            exitSessionFrame = (JFrame) window;
+            exitSessionFrame = new WeakReference<>((JFrame) window);
         }
 
         if (Settings.settings().getBoolean("IbAutoClosedown", false)) return;
@@ -51,12 +53,16 @@ class ExitSessionFrameHandler implements WindowHandler {
         }
     }
 
+    public WindowHandlerHints getHints() {
+        return WindowHandlerHints.forFrames().onEvents(WindowEvent.WINDOW_OPENED, WindowEvent.WINDOW_ACTIVATED);
+    }
+
     public boolean recogniseWindow(Window window) {
         if (! (window instanceof JFrame))  return false;
 
         return (SwingUtils.titleContains(window, "Exit Session Setting")  ||
                     SwingUtils.titleContains(window, "Session-Exit-Einstellung") || 
-                    exitSessionFrame == (JFrame)window);
+                    exitSessionFrame.get() == (JFrame)window);
     }
 
     private boolean adjustExitSessionTime(Window window) {
@@ -65,25 +71,19 @@ class ExitSessionFrameHandler implements WindowHandler {
         cal.setTime(newLogoffTime);
         String newLogoffTimeText = new SimpleDateFormat("hh:mm").format(newLogoffTime);
 
-        SwingUtils.setTextField(window, 0, newLogoffTimeText);
+        ComponentIndex index = ComponentIndex.of(window);
+
+        index.setTextField(0, newLogoffTimeText);
 
         if (cal.get(Calendar.AM_PM) == Calendar.AM) {
-            if (! SwingUtils.setRadioButtonSelected(window, "AM" /*, true*/)) return false;
+            if (! index.setRadioButtonSelected("AM" /*, true*/)) return false;
         } else {
-            if (! SwingUtils.setRadioButtonSelected(window, "PM" /*, true*/)) return false;
+            if (! index.setRadioButtonSelected("PM" /*, true*/)) return false;
         }
 
-        if (SwingUtils.clickButton(window, "Update")) {
-        } else if (SwingUtils.clickButton(window, "Aktualisieren")) {
-        } else {
-            return false;
-        }
+        if (! index.clickAnyButton("Update", "Aktualisieren")) return false;
 
-        if (SwingUtils.clickButton(window, "Close")) {
-        } else if (SwingUtils.clickButton(window, "Schliessen")) {
-        } else {
-            return false;
-        }
+        if (! index.clickAnyButton("Close", "Schliessen")) return false;
 
         Utils.logToConsole("AutoLogoff time changed to " +
                             newLogoffTimeText +
@@ -19,11 +19,16 @@
 package ibcontroller;
 
 import java.awt.Window;
+import java.awt.event.WindowEvent;
 import javax.swing.JFrame;
-import javax.swing.JRadioButton;
 
 final class GatewayLoginFrameHandler extends AbstractLoginHandler {
     
+    @Override
+    public WindowHandlerHints getHints() {
+        return WindowHandlerHints.forFrames().onEvents(WindowEvent.WINDOW_OPENED).withTitlesContaining("IB Gateway");
+    }
+
     @Override
     public boolean recogniseWindow(Window window) {
         if (! (window instanceof JFrame)) return false;
@@ -105,18 +110,12 @@ final class GatewayLoginFrameHandler extends AbstractLoginHandler {
     }
     
     private void switchToFIX(Window window) throws IBControllerException {
-        JRadioButton button = SwingUtils.findRadioButton(window, "FIX CTCI");
-        if (button == null) throw new IBControllerException("FIX CTCI radio button");
-        
-        if (! button.isSelected()) button.doClick();
+        if (! SwingUtils.setRadioButtonSelected(window, "FIX CTCI")) throw new IBControllerException("FIX CTCI radio button");
     }
     
     private void switchToIBAPI(Window window) throws IBControllerException {
-        JRadioButton button = SwingUtils.findRadioButton(window, "IB API");
-        if (button == null) button = SwingUtils.findRadioButton(window, "TWS/API") ;
-        if (button == null) throw new IBControllerException("IB API radio button");
-        
-        if (! button.isSelected()) button.doClick();
+        if (SwingUtils.setRadioButtonSelected(window, "IB API")) return;
+        if (! SwingUtils.setRadioButtonSelected(window, "TWS/API")) throw new IBControllerException("IB API radio button");
     }
 
 }
@@ -38,6 +38,11 @@ class GatewayMainWindowFrameHandler  implements WindowHandler {
         MainWindowManager.mainWindowManager().setMainWindow((JFrame) window);
     }
 
+    @Override
+    public WindowHandlerHints getHints() {
+        return WindowHandlerHints.forFrames().onEvents(WindowEvent.WINDOW_OPENED);
+    }
+
     @Override
     public boolean recogniseWindow(Window window) {
         if (! (window instanceof JFrame)) return false;
@@ -46,6 +46,11 @@ class GlobalConfigurationDialogHandler implements WindowHandler {
         }
     }
 
+    @Override
+    public WindowHandlerHints getHints() {
+        return WindowHandlerHints.forDialogs().onEvents(WindowEvent.WINDOW_OPENED, WindowEvent.WINDOW_CLOSED).withTitlesContaining("Configuration");
+    }
+
     @Override
     public boolean recogniseWindow(Window window) {
         if (! (window instanceof JDialog)) return false;
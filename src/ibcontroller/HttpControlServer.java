@@ -0,0 +1,321 @@
+// This file is part of the "IBController".
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2016 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBController is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBController is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBController.  If not, see <http://www.gnu.org/licenses/>.
+
+package ibcontroller;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An optional HTTP interface to IBController, for clients that would 
+ * rather use standard HTTP tooling than the IBControllerServer socket 
+ * protocol.
+ * 
+ * The following endpoints are provided:
+ * 
+ *   POST /stop, /enableapi, /reconnectdata, /reconnectaccount
+ *      execute the corresponding command. An optional 'timeout' query 
+ *      parameter specifies the time allowed in milliseconds, as for the 
+ *      TIMEOUT command prefix.
+ * 
+ *   GET /status
+ *      returns IBController's operational status.
+ * 
+ *   GET /metrics
+ *      returns resource usage and activity counters.
+ * 
+ * All responses are JSON objects. Requests are handled by a small bounded 
+ * pool of threads (HttpControlThreads), and persistent connections are 
+ * supported. When the pool and its queue are full, commands are refused 
+ * with status 503, but /status and /metrics are still answered. Request 
+ * bodies larger than 64KB are refused with status 413. Requests are only accepted from addresses allowed by the 
+ * IbControlFrom setting.
+ */
+class HttpControlServer
+        implements Runnable {
+
+    private static final int QUEUE_LENGTH = 64;
+
+    private static final int MAX_REQUEST_BODY = 64 * 1024;
+
+    private static final Map<String, String> COMMANDS = new LinkedHashMap<>();
+    static {
+        COMMANDS.put("/stop", "STOP");
+        COMMANDS.put("/enableapi", "ENABLEAPI");
+        COMMANDS.put("/reconnectdata", "RECONNECTDATA");
+        COMMANDS.put("/reconnectaccount", "RECONNECTACCOUNT");
+    }
+
+    private static final AtomicLong _Requests = new AtomicLong();
+    private static final AtomicLong _Denied = new AtomicLong();
+    private static final AtomicLong _Errors = new AtomicLong();
+
+    private final boolean isGateway;
+    private AddressFilter mAddressFilter;
+
+    // set while a request that the worker pool rejected is being answered 
+    // on the server's dispatcher thread
+    private final ThreadLocal<Boolean> mRejected = new ThreadLocal<>();
+
+    HttpControlServer(boolean isGateway) {
+        this.isGateway = isGateway;
+    }
+
+    @Override
+    public void run() {
+        final int port = Settings.settings().getInt("HttpControlPort", 0);
+        if (port == 0) return;
+
+        mAddressFilter = AddressFilter.fromSettings();
+
+        final int threads = Math.max(1, Settings.settings().getInt("HttpControlThreads", 4));
+        try {
+            final String bindaddr = Settings.settings().getString("IbBindAddress", "");
+            InetSocketAddress address = bindaddr.isEmpty() ? 
+                                            new InetSocketAddress(port) : 
+                                            new InetSocketAddress(InetAddress.getByName(bindaddr), port);
+            HttpServer server = HttpServer.create(address, 0);
+            server.createContext("/", new Handler());
+            server.setExecutor(createExecutor(threads));
+            server.start();
+            Utils.logToConsole("HttpControlServer listening on port: " + port);
+        } catch (IOException e) {
+            Utils.logError("HttpControlServer failed to start: " + e.toString());
+        }
+    }
+
+    /**
+     * Returns the HTTP server's activity counters.
+     * @return
+     * the counters
+     */
+    static Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("requests", _Requests.get());
+        metrics.put("denied", _Denied.get());
+        metrics.put("errors", _Errors.get());
+        return metrics;
+    }
+
+    private Executor createExecutor(int threads) {
+        final ThreadPoolExecutor pool = createPool(threads);
+
+        // when all threads are busy and the queue is full, the request is 
+        // answered on the server's dispatcher thread, without executing 
+        // anything that might block it
+        return new Executor() {
+            @Override
+            public void execute(Runnable exchange) {
+                try {
+                    pool.execute(exchange);
+                } catch (RejectedExecutionException e) {
+                    mRejected.set(Boolean.TRUE);
+                    try {
+                        exchange.run();
+                    } finally {
+                        mRejected.remove();
+                    }
+                }
+            }
+        };
+    }
+
+    private static ThreadPoolExecutor createPool(int threads) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 
+                                                             60, TimeUnit.SECONDS, 
+                                                             new ArrayBlockingQueue<Runnable>(QUEUE_LENGTH), 
+                                                             new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "HttpControlServer-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        }, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private final class Handler implements HttpHandler {
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            _Requests.incrementAndGet();
+            try {
+                // denied clients are rejected without reading the request body
+                InetAddress client = exchange.getRemoteAddress().getAddress();
+                if (!client.equals(exchange.getLocalAddress().getAddress()) && !mAddressFilter.isAllowed(client)) {
+                    _Denied.incrementAndGet();
+                    Utils.logToConsole("HttpControlServer denied access to: " + client.toString());
+                    sendError(exchange, 403, "access denied");
+                    return;
+                }
+
+                String path = exchange.getRequestURI().getPath().toLowerCase();
+                String method = exchange.getRequestMethod();
+                String command = COMMANDS.get(path);
+
+                boolean rejected = (mRejected.get() != null);
+                if (rejected && !(method.equals("GET") && (path.equals("/status") || path.equals("/metrics")))) {
+                    exchange.getResponseHeaders().set("Connection", "close");
+                    sendError(exchange, 503, "server busy");
+                    return;
+                }
+
+                if (!rejected && !drain(exchange)) {
+                    exchange.getResponseHeaders().set("Connection", "close");
+                    sendError(exchange, 413, "request body exceeds " + MAX_REQUEST_BODY + " bytes");
+                    return;
+                }
+
+                if (command != null) {
+                    if (!method.equals("POST")) {
+                        sendMethodNotAllowed(exchange, "POST");
+                    } else {
+                        executeCommand(exchange, command);
+                    }
+                } else if (path.equals("/status") || path.equals("/metrics")) {
+                    if (!method.equals("GET")) {
+                        sendMethodNotAllowed(exchange, "GET");
+                    } else {
+                        send(exchange, 200, path.equals("/status") ? Diagnostics.status(isGateway) : Diagnostics.metrics());
+                    }
+                } else {
+                    sendError(exchange, 404, "not found: " + path);
+                }
+            } catch (RuntimeException e) {
+                Utils.logException(e);
+                sendError(exchange, 500, e.toString());
+            } finally {
+                exchange.close();
+            }
+        }
+
+        private void executeCommand(HttpExchange exchange, String command) throws IOException {
+            String timeout = getQueryParameter(exchange, "timeout");
+            if (timeout != null && !isValidTimeout(timeout)) {
+                sendError(exchange, 400, "timeout must be a positive number of milliseconds");
+                return;
+            }
+            String line = (timeout == null) ? command : "TIMEOUT " + timeout + " " + command;
+
+            Utils.logToConsole("HttpControlServer executing: " + line);
+            RecordingCommandChannel channel = new RecordingCommandChannel();
+            new CommandDispatcher(channel, isGateway).dispatch(line);
+
+            String reply = channel.getReply();
+            boolean ok = (reply != null && reply.startsWith("OK"));
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("command", command);
+            result.put("ok", ok);
+            result.put("message", (reply == null) ? null : reply.substring(reply.indexOf(' ') + 1));
+            result.put("info", channel.getInfo());
+
+            int status = 200;
+            if (!ok) {
+                _Errors.incrementAndGet();
+                status = "ERROR timeout".equals(reply) ? 504 : 500;
+            }
+            send(exchange, status, result);
+        }
+
+        private boolean isValidTimeout(String timeout) {
+            try {
+                return Long.parseLong(timeout) > 0;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+
+        private String getQueryParameter(HttpExchange exchange, String name) {
+            String query = exchange.getRequestURI().getQuery();
+            if (query == null) return null;
+            for (String param : query.split("&")) {
+                if (param.startsWith(name + "=")) return param.substring(name.length() + 1);
+            }
+            return null;
+        }
+
+        private void sendMethodNotAllowed(HttpExchange exchange, String allowed) throws IOException {
+            exchange.getResponseHeaders().set("Allow", allowed);
+            sendError(exchange, 405, "method not allowed: " + exchange.getRequestMethod());
+        }
+
+        private void sendError(HttpExchange exchange, int status, String message) throws IOException {
+            _Errors.incrementAndGet();
+            Map<String, Object> error = new LinkedHashMap<>();
+            error.put("ok", false);
+            error.put("message", message);
+            send(exchange, status, error);
+        }
+
+        private void send(HttpExchange exchange, int status, Map<String, Object> body) throws IOException {
+            // a fixed content length lets the client keep the connection open
+            byte[] bytes = Json.toJson(body).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+
+        /*
+         * Reads and discards the request body, unless it is too long.
+         * Returns false if the body is too long.
+         */
+        private boolean drain(HttpExchange exchange) throws IOException {
+            String length = exchange.getRequestHeaders().getFirst("Content-Length");
+            try {
+                if (length != null && Long.parseLong(length.trim()) > MAX_REQUEST_BODY) return false;
+            } catch (NumberFormatException e) {
+                // the server has already rejected an invalid length
+            }
+
+            InputStream in = exchange.getRequestBody();
+            byte[] buffer = new byte[512];
+            int total = 0;
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                total += n;
+                if (total > MAX_REQUEST_BODY) return false;
+            }
+            in.close();
+            return true;
+        }
+
+    }
+
+}
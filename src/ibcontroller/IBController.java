@@ -293,6 +293,8 @@ public class IBController {
         
         startIBControllerServer(isGateway);
 
+        startHttpControlServer(isGateway);
+
         startShutdownTimerIfRequired(isGateway);
 
         createToolkitListener();
@@ -303,34 +305,44 @@ public class IBController {
     }
 
     private static void createToolkitListener() {
-        Toolkit.getDefaultToolkit().addAWTEventListener(new TwsListener(createWindowHandlers()), AWTEvent.WINDOW_EVENT_MASK);
+        boolean isGateway = MainWindowManager.mainWindowManager().isGateway();
+        Toolkit.getDefaultToolkit().addAWTEventListener(new TwsListener(createWindowHandlers(isGateway)), AWTEvent.WINDOW_EVENT_MASK);
     }
 
-    private static List<WindowHandler> createWindowHandlers() {
+    /*
+     * Handlers that can only apply to TWS, or only to the Gateway, are not 
+     * created in the other mode.
+     */
+    static List<WindowHandler> createWindowHandlers(boolean isGateway) {
         List<WindowHandler> windowHandlers = new ArrayList<WindowHandler>();
+        boolean isTws = !isGateway;
 
         windowHandlers.add(new AcceptIncomingConnectionDialogHandler());
         windowHandlers.add(new BlindTradingWarningDialogHandler());
-        windowHandlers.add(new ExitSessionFrameHandler());
+        if (isTws) windowHandlers.add(new ExitSessionFrameHandler());
         windowHandlers.add(new LoginFrameHandler());
-        windowHandlers.add(new GatewayLoginFrameHandler());
-        windowHandlers.add(new MainWindowFrameHandler());
-        windowHandlers.add(new GatewayMainWindowFrameHandler());
+        if (isGateway) windowHandlers.add(new GatewayLoginFrameHandler());
+        if (isTws) windowHandlers.add(new MainWindowFrameHandler());
+        if (isGateway) windowHandlers.add(new GatewayMainWindowFrameHandler());
         windowHandlers.add(new NewerVersionDialogHandler());
         windowHandlers.add(new NewerVersionFrameHandler());
         windowHandlers.add(new NotCurrentlyAvailableDialogHandler());
-        windowHandlers.add(new TipOfTheDayDialogHandler());
+        if (isTws) windowHandlers.add(new TipOfTheDayDialogHandler());
         windowHandlers.add(new NSEComplianceFrameHandler());
         windowHandlers.add(new PasswordExpiryWarningFrameHandler());
         windowHandlers.add(new GlobalConfigurationDialogHandler());
-        windowHandlers.add(new TradesFrameHandler());
+        if (isTws) windowHandlers.add(new TradesFrameHandler());
         windowHandlers.add(new ExistingSessionDetectedDialogHandler());
         windowHandlers.add(new ApiChangeConfirmationDialogHandler());
-        windowHandlers.add(new SplashFrameHandler());
+        if (isGateway) windowHandlers.add(new SplashFrameHandler());
         windowHandlers.add(new SecurityCodeDialogHandler());
         windowHandlers.add(new ReloginDialogHandler());
         windowHandlers.add(new NonBrokerageAccountDialogHandler());
         windowHandlers.add(new ExitConfirmationDialogHandler());
+
+        windowHandlers.addAll(ProvidedWindowHandler.loadAll(isGateway));
+
+        windowHandlers.addAll(RuleWindowHandler.fromSettings());
         
         return windowHandlers;
     }
@@ -371,7 +383,7 @@ public class IBController {
         return getTWSSettingsDirectory() + File.separatorChar + "jts.ini";
     }
     
-    private static String getTWSSettingsDirectory() {
+    static String getTWSSettingsDirectory() {
         String path = Settings.settings().getString("IbDir", System.getProperty("user.dir"));
         try {
             Files.createDirectories(Paths.get(path));
@@ -413,6 +425,10 @@ public class IBController {
         MyCachedThreadPool.getInstance().execute(new IBControllerServer(isGateway));
     }
 
+    private static void startHttpControlServer(boolean isGateway) {
+        MyCachedThreadPool.getInstance().execute(new HttpControlServer(isGateway));
+    }
+
     private static void startShutdownTimerIfRequired(boolean isGateway) {
         Date shutdownTime = getShutdownTime();
         if (! (shutdownTime == null)) {
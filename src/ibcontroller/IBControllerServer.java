@@ -19,19 +19,38 @@
 package ibcontroller;
 
 import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
 import java.net.InetAddress;
 import java.net.NetworkInterface;
+import java.net.ProtocolFamily;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
 import java.net.SocketException;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.Set;
 
 class IBControllerServer
         implements Runnable {
 
     private ServerSocket mSocket = null;
+    private volatile NioCommandServer mNioServer = null;
+    private volatile NioCommandServer mLocalServer = null;
+    private volatile Path mLocalSocketPath = null;
+    private AddressFilter mAddressFilter;
     private volatile boolean mQuitting = false;
     
     private final boolean isGateway;
@@ -47,19 +66,75 @@ class IBControllerServer
         Thread.currentThread().setName("IBControllerServer");
 
         final int port = Settings.settings().getInt("IbControllerPort", 0);
-        if (port == 0) {
+        final String socketPath = Settings.settings().getString("CommandSocketPath", "");
+        if (port == 0 && socketPath.isEmpty()) {
             Utils.logToConsole("IBControllerServer is not started because the port is not configured");
             return;
         }
 
+        if (!socketPath.isEmpty()) startLocalServer(socketPath);
+
+        if (port == 0) {
+            Utils.logToConsole("IBControllerServer is not listening on a TCP port because the port is not configured");
+            return;
+        }
+
         Utils.logToConsole("IBControllerServer is starting with port " + port);
 
+        mAddressFilter = AddressFilter.fromSettings();
+
+        final String mode = Settings.settings().getString("CommandServerMode", "blocking");
+        if (mode.equalsIgnoreCase("nio")) {
+            runNioServer(port);
+        } else {
+            if (!mode.equalsIgnoreCase("blocking")) Utils.logError("the CommandServerMode setting is invalid: blocking assumed");
+            runBlockingServer(port);
+        }
+
+        Utils.logToConsole("IBControllerServer is shutdown");
+    }
+
+    public void shutdown() {
+        mQuitting = true;
+        
+        // unblock the thread that's waiting for the next connection
+        final NioCommandServer nioServer = mNioServer;
+        if (nioServer != null) nioServer.shutdown();
+        final NioCommandServer localServer = mLocalServer;
+        if (localServer != null) {
+            localServer.shutdown();
+            try {
+                Files.deleteIfExists(mLocalSocketPath);
+            } catch (IOException e) {
+            }
+        }
+        final ServerSocket socket = mSocket;
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+            }
+        }
+    }
+
+    /**
+     * Indicates whether commands may be accepted from the specified address.
+     * @param address
+     * the client's address
+     * @return
+     * true if the client is allowed to connect; otherwise false
+     */
+    boolean isAllowed(InetAddress address) {
+        return (address.equals(mSocket.getInetAddress()) || mAddressFilter.isAllowed(address));
+    }
+
+    private void runBlockingServer(final int port) {
         if (createSocket(port)) {
             Utils.logToConsole("IBControllerServer started and is ready to accept commands");
             for (; !mQuitting;) {
                 Socket socket = getClient();
 
-                if (socket != null)  MyCachedThreadPool.getInstance().execute(new CommandDispatcher(new CommandChannel(socket), isGateway));
+                if (socket != null)  MyCachedThreadPool.getInstance().execute(new CommandDispatcher(new SocketCommandChannel(socket), isGateway));
             }
 
             try {
@@ -67,27 +142,186 @@ class IBControllerServer
             } catch (Exception e) {
             }
         }
+    }
 
-        Utils.logToConsole("IBControllerServer is shutdown");
+    private void runNioServer(final int port) {
+        ServerSocketChannel serverChannel = null;
+        try {
+            serverChannel = ServerSocketChannel.open();
+            mSocket = serverChannel.socket();
+            if (!bindSocket(port)) {
+                serverChannel.close();
+                return;
+            }
+            mNioServer = new NioCommandServer(this, isGateway);
+            mNioServer.listen(serverChannel);
+        } catch (IOException e) {
+            Utils.logError("exception:\n" + e.toString());
+            Utils.logToConsole("IBControllerServer cannot process commands");
+            return;
+        }
+
+        if (mQuitting) mNioServer.shutdown();
+        Utils.logToConsole("IBControllerServer started in NIO mode and is ready to accept commands");
+        mNioServer.run();
     }
 
-    public void shutdown() {
-        mQuitting = true;
+    /*
+     * Serves commands on a Unix domain socket, using a separate NioCommandServer
+     * regardless of the CommandServerMode setting.
+     */
+    private void startLocalServer(String socketPath) {
+        ServerSocketChannel channel = null;
+        try {
+            channel = openLocalChannel(Paths.get(socketPath));
+            mLocalServer = new NioCommandServer(this, isGateway);
+            mLocalServer.listenLocal(channel);
+        } catch (IOException | IBControllerException e) {
+            Utils.logError("IBControllerServer cannot listen on " + socketPath + ": " + e.getMessage());
+            closeQuietly(channel);
+            mLocalServer = null;
+            return;
+        }
+
+        Utils.logToConsole("IBControllerServer listening on local socket: " + socketPath);
+        MyCachedThreadPool.getInstance().execute(new Runnable() {
+            @Override
+            public void run() {
+                Thread.currentThread().setName("IBControllerServer-local");
+                mLocalServer.run();
+            }
+        });
+    }
+
+    private ServerSocketChannel openLocalChannel(Path path) throws IOException, IBControllerException {
+        final String permissionsSetting = Settings.settings().getString("CommandSocketPermissions", "rw-------");
+        final Set<PosixFilePermission> permissions;
+        try {
+            permissions = PosixFilePermissions.fromString(permissionsSetting);
+        } catch (IllegalArgumentException e) {
+            throw new IBControllerException("the CommandSocketPermissions setting is invalid: " + permissionsSetting);
+        }
+
+        // remove the socket file left by a previous run, if any
+        if (Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+            if (!Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).isOther()) {
+                throw new IBControllerException("file exists and is not a socket");
+            }
+            Files.delete(path);
+        }
+
+        Path privateDir = createPrivateDirectory(path.toAbsolutePath().getParent());
+        Path tempPath = privateDir.resolve("socket");
+        ServerSocketChannel channel = null;
+        try {
+            channel = openUnixChannel();
+
+            // The socket is bound inside a directory that only the owner can
+            // access, and its permissions are set before it is moved to its
+            // final path, so no other user can connect to it in the meantime
+            channel.bind(unixAddress(tempPath));
+            try {
+                Files.setPosixFilePermissions(tempPath, permissions);
+            } catch (UnsupportedOperationException e) {
+                // not a POSIX file system: rely on the permissions of the directory
+            }
+            Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | IBControllerException | RuntimeException e) {
+            closeQuietly(channel);
+            throw e;
+        } finally {
+            deleteQuietly(tempPath);
+            deleteQuietly(privateDir);
+        }
+
+        mLocalSocketPath = path;
+        path.toFile().deleteOnExit();
+        return channel;
+    }
+
+    /*
+     * Creates a uniquely named directory, accessible only by the owner, in
+     * which the socket can be bound.
+     */
+    private static Path createPrivateDirectory(Path parent) throws IOException {
+        final String prefix = ".ibcontroller-";
+        try {
+            return Files.createTempDirectory(parent,
+                                            prefix,
+                                            PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        } catch (UnsupportedOperationException e) {
+            return Files.createTempDirectory(parent, prefix);
+        }
+    }
+
+    // Unix domain sockets are only supported from Java 16, so the 
+    // relevant classes and methods must be found reflectively
+
+    private static ServerSocketChannel openUnixChannel() throws IOException, IBControllerException {
+        try {
+            ProtocolFamily unix = StandardProtocolFamily.valueOf("UNIX");
+            return (ServerSocketChannel) ServerSocketChannel.class.getMethod("open", ProtocolFamily.class).invoke(null, unix);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IBControllerException("Unix domain sockets are not supported: " + e.getCause());
+        } catch (IllegalArgumentException | ReflectiveOperationException e) {
+            throw new IBControllerException("Unix domain sockets are not supported by this version of Java");
+        }
+    }
+
+    private static SocketAddress unixAddress(Path path) throws IBControllerException {
+        try {
+            return (SocketAddress) Class.forName("java.net.UnixDomainSocketAddress").getMethod("of", Path.class).invoke(null, path);
+        } catch (InvocationTargetException e) {
+            throw new IBControllerException("invalid socket path " + path + ": " + e.getCause().getMessage());
+        } catch (ReflectiveOperationException e) {
+            throw new IBControllerException("Unix domain sockets are not supported by this version of Java");
+        }
+    }
+
+    private static void closeQuietly(ServerSocketChannel channel) {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            Utils.logError("IBControllerServer could not close local socket: " + e.getMessage());
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            Utils.logError("IBControllerServer could not delete " + path + ": " + e.getMessage());
+        }
     }
 
     private boolean createSocket(final int port) {
+        try {
+            mSocket = new ServerSocket();
+        } catch (IOException e) {
+            Utils.logError("exception:\n" + e.toString());
+            Utils.logToConsole("IBControllerServer failed to create socket");
+            Utils.logToConsole("IBControllerServer cannot process commands");
+            mSocket = null;
+            mQuitting = true;
+            return false;
+        }
+        return bindSocket(port);
+    }
+
+    private boolean bindSocket(final int port) {
         final int backlog = 5;
         try {
             final String bindaddr = Settings.settings().getString("IbBindAddress", "");
             if (!bindaddr.isEmpty()) {
-                mSocket = new ServerSocket(port,
-                                            backlog,
-                                            InetAddress.getByName(bindaddr));
+                mSocket.bind(new InetSocketAddress(InetAddress.getByName(bindaddr), port),
+                                            backlog);
                 Utils.logToConsole("IBControllerServer listening on address: " +
                                    bindaddr + " port: " +
                                    java.lang.String.valueOf(port));
             } else {
-                mSocket = new ServerSocket(port, backlog);
+                mSocket.bind(new InetSocketAddress(port), backlog);
                 Utils.logToConsole("IBControllerServer listening on addresses: " +
                                    getAddresses() + "; port: " +
                                    java.lang.String.valueOf(port));
@@ -113,13 +347,7 @@ class IBControllerServer
         try {
             final Socket socket = mSocket.accept();
 
-            final String allowedAddresses =
-                    Settings.settings().getString("IbControlFrom", "");
-
-            if (!socket.getInetAddress().getHostAddress().equals(mSocket.getInetAddress().getHostAddress()) &&
-                    !socket.getInetAddress().getHostAddress().equals(InetAddress.getLoopbackAddress().getHostAddress()) &&
-                    !allowedAddresses.contains(socket.getInetAddress().getHostAddress()) &&
-                    !allowedAddresses.contains(socket.getInetAddress().getHostName())) {
+            if (!isAllowed(socket.getInetAddress())) {
                 Utils.logToConsole("IBControllerServer denied access to: " +
                                     socket.getInetAddress().toString());
                 socket.close();
@@ -129,7 +357,7 @@ class IBControllerServer
             Utils.logToConsole("IBControllerServer accepted connection from: " + socket.getInetAddress().getHostAddress());
             return socket;
         } catch (IOException e) {
-            e.printStackTrace();
+            if (!mQuitting) e.printStackTrace();
             return null;
         } catch (Exception e) {
             e.printStackTrace();
@@ -0,0 +1,110 @@
+// This file is part of the "IBController".
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2016 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBController is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBController is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBController.  If not, see <http://www.gnu.org/licenses/>.
+
+package ibcontroller;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Converts simple values to JSON text.
+ * 
+ * Only the types used for IBController's status and diagnostics output are
+ * supported: Maps (whose keys are converted to strings), Iterables, Strings,
+ * Numbers, Booleans and null. Any other object is written as its string 
+ * representation.
+ */
+final class Json {
+
+    private Json() {}
+
+    static String toJson(Object value) {
+        StringBuilder sb = new StringBuilder();
+        append(sb, value);
+        return sb.toString();
+    }
+
+    private static void append(StringBuilder sb, Object value) {
+        if (value == null) {
+            sb.append("null");
+        } else if (value instanceof Map) {
+            appendMap(sb, (Map<?, ?>) value);
+        } else if (value instanceof Iterable) {
+            appendIterable(sb, (Iterable<?>) value);
+        } else if (value instanceof Number || value instanceof Boolean) {
+            sb.append(value.toString());
+        } else {
+            appendString(sb, value.toString());
+        }
+    }
+
+    private static void appendMap(StringBuilder sb, Map<?, ?> map) {
+        sb.append('{');
+        Iterator<? extends Map.Entry<?, ?>> it = map.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<?, ?> entry = it.next();
+            appendString(sb, String.valueOf(entry.getKey()));
+            sb.append(':');
+            append(sb, entry.getValue());
+            if (it.hasNext()) sb.append(',');
+        }
+        sb.append('}');
+    }
+
+    private static void appendIterable(StringBuilder sb, Iterable<?> values) {
+        sb.append('[');
+        Iterator<?> it = values.iterator();
+        while (it.hasNext()) {
+            append(sb, it.next());
+            if (it.hasNext()) sb.append(',');
+        }
+        sb.append(']');
+    }
+
+    private static void appendString(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+
+}
@@ -0,0 +1,405 @@
+// This file is part of the "IBController".
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2016 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBController is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBController is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBController.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package ibcontroller;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Window;
+import java.awt.event.ContainerEvent;
+import java.awt.event.ContainerListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import javax.swing.AbstractButton;
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import javax.swing.JMenu;
+import javax.swing.JMenuItem;
+import javax.swing.JPopupMenu;
+import javax.swing.JRadioButton;
+import javax.swing.JTree;
+import javax.swing.RootPaneContainer;
+import javax.swing.SwingUtilities;
+
+/**
+ * An index of a long-lived window's components that is built once and then
+ * kept up to date as components are added and removed, and as their text
+ * or names change, so that lookups don't need to traverse the window's 
+ * component hierarchy.
+ * 
+ * The items in a JMenu's popup menu are indexed along with the rest of the
+ * window's components, so menu items can also be located without searching
+ * the menu bars.
+ * 
+ * An index is attached to its window (as a client property of the window's
+ * root pane) by the first call to {@link #forWindow(Window)}, and is detached 
+ * again, removing all its listeners, when the window is closed.
+ */
+final class LiveComponentIndex {
+
+    private static final Object CLIENT_PROPERTY_KEY = LiveComponentIndex.class;
+
+    private final Window window;
+
+    private final Set<Component> components = new LinkedHashSet<>();
+
+    private final Map<String, List<Component>> byText = new HashMap<>();
+
+    private final Map<String, List<Component>> byName = new HashMap<>();
+
+    private boolean detached;
+
+    private final ContainerListener containerListener = new ContainerListener() {
+        @Override
+        public void componentAdded(ContainerEvent e) {
+            synchronized (LiveComponentIndex.this) {
+                if (!detached) attach(e.getChild());
+            }
+        }
+
+        @Override
+        public void componentRemoved(ContainerEvent e) {
+            synchronized (LiveComponentIndex.this) {
+                if (!detached) detach(e.getChild());
+            }
+        }
+    };
+
+    private final PropertyChangeListener propertyListener = new PropertyChangeListener() {
+        @Override
+        public void propertyChange(PropertyChangeEvent e) {
+            synchronized (LiveComponentIndex.this) {
+                if (detached) return;
+                Component component = (Component)e.getSource();
+                if (!components.contains(component)) return;
+                Map<String, List<Component>> map = "name".equals(e.getPropertyName()) ? byName : byText;
+                remove(map, (String)e.getOldValue(), component);
+                put(map, (String)e.getNewValue(), component);
+            }
+        }
+    };
+
+    private final WindowAdapter windowListener = new WindowAdapter() {
+        @Override
+        public void windowClosed(WindowEvent e) {
+            detach();
+        }
+    };
+
+    private LiveComponentIndex(Window window) {
+        this.window = window;
+    }
+
+    /**
+     * Returns the index for the specified window, creating it if need be. 
+     * 
+     * The index is built on the event dispatch thread.
+     * @param window
+     *  the window
+     * @return
+     *  the window's index; if the window has no root pane, or the calling 
+     *  thread is interrupted while the index is being built, a new index is 
+     *  returned each time, and it is not kept up to date
+     */
+    static LiveComponentIndex forWindow(final Window window) {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            LiveComponentIndex index = SwingUtils.callOnEventDispatchThread(new Callable<LiveComponentIndex>() {
+                @Override
+                public LiveComponentIndex call() {
+                    return forWindow(window);
+                }
+            });
+            return (index == null) ? snapshot(window) : index;
+        }
+
+        if (!(window instanceof RootPaneContainer)) return snapshot(window);
+        JComponent rootPane = ((RootPaneContainer)window).getRootPane();
+        if (rootPane == null) return snapshot(window);
+
+        LiveComponentIndex index = (LiveComponentIndex)rootPane.getClientProperty(CLIENT_PROPERTY_KEY);
+        if (index == null) {
+            index = new LiveComponentIndex(window);
+            index.attachAll();
+            rootPane.putClientProperty(CLIENT_PROPERTY_KEY, index);
+            window.addWindowListener(index.windowListener);
+        }
+        return index;
+    }
+
+    /**
+     * Returns the index for the specified container if it is a window that 
+     * has one; otherwise returns null.
+     */
+    static LiveComponentIndex getExisting(Container container) {
+        if (!(container instanceof Window && container instanceof RootPaneContainer)) return null;
+        JComponent rootPane = ((RootPaneContainer)container).getRootPane();
+        if (rootPane == null) return null;
+        return (LiveComponentIndex)rootPane.getClientProperty(CLIENT_PROPERTY_KEY);
+    }
+
+    private static LiveComponentIndex snapshot(Window window) {
+        LiveComponentIndex index = new LiveComponentIndex(window);
+        synchronized (index) {
+            for (Component component : window.getComponents()) index.add(component);
+            index.detached = true;
+        }
+        return index;
+    }
+
+    private synchronized void attachAll() {
+        window.addContainerListener(containerListener);
+        for (Component component : window.getComponents()) attach(component);
+    }
+
+    /**
+     * Removes all the index's listeners, and detaches it from its window.
+     * 
+     * This is done automatically when the window is closed.
+     */
+    void detach() {
+        synchronized (this) {
+            if (detached) return;
+            window.removeContainerListener(containerListener);
+            for (Component component : window.getComponents()) detach(component);
+            components.clear();
+            byText.clear();
+            byName.clear();
+            detached = true;
+        }
+        window.removeWindowListener(windowListener);
+        if (window instanceof RootPaneContainer) {
+            JComponent rootPane = ((RootPaneContainer)window).getRootPane();
+            if (rootPane != null && rootPane.getClientProperty(CLIENT_PROPERTY_KEY) == this) {
+                rootPane.putClientProperty(CLIENT_PROPERTY_KEY, null);
+            }
+        }
+    }
+
+    private void attach(Component component) {
+        if (!components.add(component)) return;
+        index(component);
+        component.addPropertyChangeListener("name", propertyListener);
+        if (component instanceof AbstractButton || component instanceof JLabel) {
+            component.addPropertyChangeListener("text", propertyListener);
+        }
+        if (component instanceof Container) {
+            Container container = (Container)component;
+            container.addContainerListener(containerListener);
+            for (Component child : container.getComponents()) attach(child);
+        }
+        if (component instanceof JMenu) attach(((JMenu)component).getPopupMenu());
+    }
+
+    private void detach(Component component) {
+        // a menu's popup is removed from the window's layered pane (or from
+        // the panel that wraps it there) whenever it is hidden, but it still 
+        // belongs to the menu, so it stays indexed until the menu is removed
+        if (isPopupOfIndexedMenu(component)) return;
+        if (!components.remove(component)) return;
+        unindex(component);
+        component.removePropertyChangeListener("name", propertyListener);
+        component.removePropertyChangeListener("text", propertyListener);
+        if (component instanceof Container) {
+            Container container = (Container)component;
+            container.removeContainerListener(containerListener);
+            for (Component child : container.getComponents()) detach(child);
+        }
+        if (component instanceof JMenu) detach(((JMenu)component).getPopupMenu());
+    }
+
+    private boolean isPopupOfIndexedMenu(Component component) {
+        if (!(component instanceof JPopupMenu)) return false;
+        Component invoker = ((JPopupMenu)component).getInvoker();
+        return invoker instanceof JMenu && 
+                ((JMenu)invoker).getPopupMenu() == component && 
+                components.contains(invoker);
+    }
+
+    // used for snapshots, which have no listeners
+    private void add(Component component) {
+        if (!components.add(component)) return;
+        index(component);
+        if (component instanceof Container) {
+            for (Component child : ((Container)component).getComponents()) add(child);
+        }
+        if (component instanceof JMenu) add(((JMenu)component).getPopupMenu());
+    }
+
+    private void index(Component component) {
+        put(byText, getText(component), component);
+        put(byName, component.getName(), component);
+    }
+
+    private void unindex(Component component) {
+        remove(byText, getText(component), component);
+        remove(byName, component.getName(), component);
+    }
+
+    private static String getText(Component component) {
+        if (component instanceof AbstractButton) return ((AbstractButton)component).getText();
+        if (component instanceof JLabel) return ((JLabel)component).getText();
+        return null;
+    }
+
+    private static void put(Map<String, List<Component>> map, String key, Component component) {
+        if (key == null) return;
+        List<Component> list = map.get(key);
+        if (list == null) {
+            list = new ArrayList<>(1);
+            map.put(key, list);
+        }
+        list.add(component);
+    }
+
+    private static void remove(Map<String, List<Component>> map, String key, Component component) {
+        if (key == null) return;
+        List<Component> list = map.get(key);
+        if (list == null) return;
+        list.remove(component);
+        if (list.isEmpty()) map.remove(key);
+    }
+
+    private synchronized <T> T findByText(Class<T> type, String text) {
+        List<Component> list = byText.get(text);
+        if (list == null) return null;
+        for (Component component : list) {
+            if (type.isInstance(component)) return type.cast(component);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of components in the index.
+     */
+    synchronized int size() {
+        return components.size();
+    }
+
+    /**
+     * Returns the button with the given text.
+     * @param text
+     *  the label of the button to be found
+     * @return
+     *  the button, if was found;  otherwise null
+     */
+    JButton findButton(String text) {
+        return findByText(JButton.class, text);
+    }
+
+    /**
+     * Returns the checkbox with the given text.
+     * @param text
+     *  the label of the checkbox to be found
+     * @return
+     *  the checkbox, if it was found;  otherwise null
+     */
+    JCheckBox findCheckBox(String text) {
+        return findByText(JCheckBox.class, text);
+    }
+
+    /**
+     * Returns the radio button with the given text.
+     * @param text
+     *  the label of the radio button to be found
+     * @return
+     *  the radio button, if it was found;  otherwise null
+     */
+    JRadioButton findRadioButton(String text) {
+        return findByText(JRadioButton.class, text);
+    }
+
+    /**
+     * Returns the Component with the given name.
+     * @param name
+     *  the name of the Component to be found
+     * @return
+     *  the Component, if it was found;  otherwise null
+     */
+    synchronized Component findComponent(String name) {
+        List<Component> list = byName.get(name);
+        return (list == null) ? null : list.get(0);
+    }
+
+    /**
+     * Returns the window's JTree (if it has more than one, which is
+     * returned is unspecified).
+     * @return
+     *  a JTree, if one was found;  otherwise null
+     */
+    synchronized JTree findTree() {
+        for (Component component : components) {
+            if (component instanceof JTree) return (JTree)component;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the JMenuItem with the given path, from any of the window's 
+     * menu bars.
+     * @param path
+     *  the required menu path
+     * @return
+     *  the JMenuItem at the specified path, if found; otherwise null
+     */
+    synchronized JMenuItem findMenuItem(String[] path) {
+        if (path.length == 0) return null;
+        List<Component> list = byText.get(path[path.length - 1]);
+        if (list == null) return null;
+        for (Component component : list) {
+            if (component instanceof JMenuItem && SwingUtils.getMenuBarAtPath((JMenuItem)component, path) != null) return (JMenuItem)component;
+        }
+        return null;
+    }
+
+    /**
+     * Performs a click on the button labelled with the specified text.
+     * @param buttonText
+     *  the button's label
+     * @return
+     *  true if the button was found;  false if the button was not found
+     */
+    boolean clickButton(String buttonText) {
+        return SwingUtils.clickButton(findButton(buttonText), buttonText);
+    }
+
+    /**
+     * Sets or clears the JCheckBox with the specified text.
+     * @param buttonText
+     *  the label of the JCheckBox
+     * @param value
+     *  true to set the JCheckBox; false to clear it
+     * @return
+     *  true if the JCheckBox was found; otherwise false
+     */
+    boolean setCheckBoxSelected(String buttonText, boolean value) {
+        return SwingUtils.setCheckBoxSelected(findCheckBox(buttonText), value);
+    }
+
+}
@@ -19,10 +19,16 @@
 package ibcontroller;
 
 import java.awt.Window;
+import java.awt.event.WindowEvent;
 import javax.swing.JFrame;
 
 final class LoginFrameHandler extends AbstractLoginHandler {
 
+    @Override
+    public WindowHandlerHints getHints() {
+        return WindowHandlerHints.forFrames().onEvents(WindowEvent.WINDOW_OPENED).withTitles("New Login", "Login");
+    }
+
     @Override
     public boolean recogniseWindow(Window window) {
         if (! (window instanceof JFrame)) return false;
@@ -85,6 +85,20 @@ public abstract class MainWindowManager {
      */
     public abstract JFrame getMainWindow() throws IllegalStateException;
     
+    /**
+     * Indicates whether the main window has been found, without blocking
+     * the calling thread or initiating a search for it.
+     * 
+     * Subclasses should override this: the default implementation uses
+     * getMainWindow() with a very short timeout.
+     * 
+     * @return
+     * true if the main window is available; otherwise false
+     */
+    public boolean hasMainWindow() {
+        return getMainWindow(1, TimeUnit.MILLISECONDS) != null;
+    }
+
     public abstract boolean isGateway();
 
     public abstract void setMainWindow(JFrame window);
@@ -0,0 +1,175 @@
+// This file is part of the "IBController".
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2016 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBController is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBController is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBController.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package ibcontroller;
+
+import java.awt.Container;
+import java.awt.event.ContainerEvent;
+import java.awt.event.ContainerListener;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.swing.JMenuBar;
+import javax.swing.JMenuItem;
+import javax.swing.SwingUtilities;
+
+/**
+ * Remembers the JMenuItem found at each menu path (for example 
+ * "File > Save Settings") within each window, so that repeated menu 
+ * invocations, such as the retries in Utils.invokeMenuItem(), don't each 
+ * search all the window's menu bars.
+ * 
+ * A remembered item is checked before it is used, by following its parent 
+ * menus up to the menu bar and confirming that their text still matches 
+ * the path and that the menu bar is still in the window: this is much 
+ * cheaper than a search. In addition, a window's entries are discarded 
+ * whenever menus are added to or removed from one of its menu bars, or a 
+ * menu bar is added to or removed from the window.
+ * 
+ * Windows and menu items are held weakly, so the index never keeps a 
+ * closed window alive. Menu items must only be looked up on the event 
+ * dispatch thread.
+ */
+class MenuPathIndex {
+
+    private static final MenuPathIndex instance = new MenuPathIndex();
+
+    private final Map<Container, Map<String, WeakReference<JMenuItem>>> items = new WeakHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    // the listener doesn't refer to any window, so it doesn't prevent
+    // windows being garbage collected
+    private final ContainerListener menuBarListener = new ContainerListener() {
+        @Override
+        public void componentAdded(ContainerEvent e) {
+            menuBarChanged(e);
+        }
+
+        @Override
+        public void componentRemoved(ContainerEvent e) {
+            menuBarChanged(e);
+        }
+    };
+
+    private MenuPathIndex() {}
+
+    static MenuPathIndex getInstance() {return instance;}
+
+    /**
+     * Returns the JMenuItem with the given path from the first JMenuBar in
+     * the container that contains it, using the remembered item if it is 
+     * still valid.
+     * @param container
+     * the Container to search in
+     * @param path
+     * the required menu path
+     * @return
+     * the JMenuItem at the specified path, if found; otherwise null
+     */
+    synchronized JMenuItem findMenuItem(Container container, String[] path) {
+        if (path.length == 0) return null;
+        String key = path[0];
+        for (int i = 1; i < path.length; i++) key = key + " > " + path[i];
+
+        Map<String, WeakReference<JMenuItem>> windowItems = items.get(container);
+        WeakReference<JMenuItem> ref = (windowItems == null) ? null : windowItems.get(key);
+        JMenuItem menuItem = (ref == null) ? null : ref.get();
+        if (menuItem != null) {
+            if (isValid(container, menuItem, path)) {
+                hits.incrementAndGet();
+                return menuItem;
+            }
+            windowItems.remove(key);
+            invalidations.incrementAndGet();
+        }
+
+        misses.incrementAndGet();
+        LiveComponentIndex index = LiveComponentIndex.getExisting(container);
+        menuItem = (index == null) ? null : index.findMenuItem(path);
+        if (menuItem == null) menuItem = SwingUtils.findMenuItemInAnyMenuBar(container, path);
+        if (menuItem == null) return null;
+
+        if (windowItems == null) {
+            windowItems = new HashMap<>();
+            items.put(container, windowItems);
+        }
+        windowItems.put(key, new WeakReference<>(menuItem));
+        watch(SwingUtils.getMenuBarAtPath(menuItem, path));
+        return menuItem;
+    }
+
+    /**
+     * Returns the index's activity counters.
+     * @return
+     * the counters
+     */
+    Map<String, Object> getStatistics() {
+        long h = hits.get();
+        long m = misses.get();
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("hits", h);
+        statistics.put("misses", m);
+        statistics.put("hitRatio", (h + m == 0) ? 0.0 : (double) h / (h + m));
+        statistics.put("invalidations", invalidations.get());
+        synchronized (this) {
+            statistics.put("windows", items.size());
+        }
+        return statistics;
+    }
+
+    private static boolean isValid(Container container, JMenuItem menuItem, String[] path) {
+        JMenuBar menuBar = SwingUtils.getMenuBarAtPath(menuItem, path);
+        return menuBar != null && SwingUtilities.isDescendingFrom(menuBar, container);
+    }
+
+    private void watch(JMenuBar menuBar) {
+        if (menuBar == null) return;
+        menuBar.removeContainerListener(menuBarListener);
+        menuBar.addContainerListener(menuBarListener);
+        Container parent = menuBar.getParent();
+        if (parent != null) {
+            parent.removeContainerListener(menuBarListener);
+            parent.addContainerListener(menuBarListener);
+        }
+    }
+
+    private synchronized void menuBarChanged(ContainerEvent e) {
+        Container changed = e.getContainer();
+        // the menu bar's parent also contains other things, such as 
+        // lightweight popups, which don't affect the menu paths
+        if (!(changed instanceof JMenuBar) && !(e.getChild() instanceof JMenuBar)) return;
+
+        Iterator<Container> it = items.keySet().iterator();
+        while (it.hasNext()) {
+            Container container = it.next();
+            if (container != null && SwingUtilities.isDescendingFrom(changed, container)) {
+                it.remove();
+                invalidations.incrementAndGet();
+            }
+        }
+    }
+
+}
@@ -18,14 +18,136 @@
 
 package ibcontroller;
 
+import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * The thread pool used for command dispatchers, configuration tasks and other
+ * background work.
+ * 
+ * If the UseVirtualThreads setting is true and the Java runtime supports 
+ * virtual threads, each task runs in its own virtual thread, so that tasks 
+ * that spend most of their time waiting (for example for the main window or
+ * the config dialog) don't tie up platform threads. Otherwise an unbounded 
+ * pool of platform threads is used.
+ */
 public class MyCachedThreadPool {
-    private static final ExecutorService instance = Executors.newCachedThreadPool();
+    private static boolean virtual;
+    private static final CountingExecutorService instance = new CountingExecutorService(createExecutor());
 
     private MyCachedThreadPool() {}
 
     static ExecutorService getInstance() {return instance;}
 
+    /**
+     * Indicates whether the pool runs tasks in virtual threads.
+     * @return
+     * true if tasks run in virtual threads; false if they run in pooled 
+     * platform threads
+     */
+    static boolean usesVirtualThreads() {return virtual;}
+
+    /**
+     * Returns the number of tasks that are currently running.
+     * @return
+     * the number of running tasks
+     */
+    static int getActiveCount() {return instance.active.get();}
+
+    /**
+     * Returns the number of tasks that have finished.
+     * @return
+     * the number of finished tasks
+     */
+    static long getCompletedTaskCount() {return instance.completed.get();}
+
+    /**
+     * Returns the number of platform threads in the pool.
+     * @return
+     * the number of pooled threads, or -1 if tasks run in virtual threads
+     */
+    static int getPoolSize() {
+        return (instance.executor instanceof ThreadPoolExecutor) ? ((ThreadPoolExecutor) instance.executor).getPoolSize() : -1;
+    }
+
+    private static ExecutorService createExecutor() {
+        if (Settings.settings().getBoolean("UseVirtualThreads", false)) {
+            try {
+                // Executors.newVirtualThreadPerTaskExecutor() is only available 
+                // from Java 21, so it must be found reflectively
+                ExecutorService executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                virtual = true;
+                Utils.logToConsole("using virtual threads for background tasks");
+                return executor;
+            } catch (NoSuchMethodException e) {
+                Utils.logToConsole("virtual threads are not supported by this version of Java: using platform threads");
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                Utils.logToConsole("virtual threads are not available (" + e.toString() + "): using platform threads");
+            }
+        }
+        return Executors.newCachedThreadPool();
+    }
+
+    /*
+     * Counts running and completed tasks, since a virtual thread executor 
+     * provides no statistics of its own.
+     */
+    private static final class CountingExecutorService extends AbstractExecutorService {
+        final ExecutorService executor;
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicLong completed = new AtomicLong();
+
+        CountingExecutorService(ExecutorService executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public void execute(final Runnable command) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    active.incrementAndGet();
+                    try {
+                        command.run();
+                    } finally {
+                        active.decrementAndGet();
+                        completed.incrementAndGet();
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void shutdown() {
+            executor.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return executor.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return executor.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return executor.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return executor.awaitTermination(timeout, unit);
+        }
+    }
+
 }
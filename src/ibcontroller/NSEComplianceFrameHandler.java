@@ -40,6 +40,10 @@ public class NSEComplianceFrameHandler  implements WindowHandler {
         Utils.logToConsole("NSE Compliance Dialog disposed");
     }
 
+    public WindowHandlerHints getHints() {
+        return WindowHandlerHints.forFrames().onEvents(WindowEvent.WINDOW_OPENED, WindowEvent.WINDOW_ACTIVATED).withTitlesContaining("NSE Compliance").onEventDispatchThread();
+    }
+
     public boolean recogniseWindow(Window window) {
         if (! (window instanceof JFrame)) return false;
 
@@ -42,6 +42,10 @@ class NewerVersionDialogHandler implements WindowHandler {
         }
     }
 
+    public WindowHandlerHints getHints() {
+        return WindowHandlerHints.forDialogs().onEvents(WindowEvent.WINDOW_OPENED, WindowEvent.WINDOW_ACTIVATED).pinned();
+    }
+
     public boolean recogniseWindow(Window window) {
         if (!(window instanceof JDialog)) return false;
 
@@ -41,6 +41,10 @@ class NewerVersionFrameHandler implements WindowHandler {
         }
     }
 
+    public WindowHandlerHints getHints() {
+        return WindowHandlerHints.forFrames().onEvents(WindowEvent.WINDOW_OPENED, WindowEvent.WINDOW_ACTIVATED).pinned();
+    }
+
     public boolean recogniseWindow(Window window) {
         if (!(window instanceof JFrame)) return false;
 
@@ -0,0 +1,259 @@
+// This file is part of the "IBController".
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2016 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBController is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBController is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBController.  If not, see <http://www.gnu.org/licenses/>.
+
+package ibcontroller;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A CommandChannel serviced by the NioCommandServer's selector thread.
+ * 
+ * Incoming bytes are accumulated and split into lines on the selector thread, 
+ * and outgoing replies are queued and written when the socket is writable, so
+ * an idle connection doesn't occupy a thread. Commands are executed on a pool 
+ * thread, one at a time for each connection, and only while there are 
+ * commands waiting.
+ * 
+ * A client that sends commands faster than they are executed, or doesn't 
+ * read the replies, can't make the connection's queues grow without limit:
+ * the channel stops reading from the socket while too many commands are
+ * waiting or too much output is unsent, and resumes once they have dropped 
+ * below the limits.
+ */
+final class NioCommandChannel extends CommandChannel {
+
+    private static final int MAX_COMMAND_LENGTH = 4096;
+    private static final int MAX_QUEUED_COMMANDS = 64;
+    private static final int MAX_PENDING_OUTPUT = 64 * 1024;
+    // the level above which events are held back (see EventPublisher)
+    private static final int EVENT_OUTPUT_LIMIT = 16 * 1024;
+    private static final Charset CHARSET = Charset.defaultCharset();
+    private static final String NEWLINE = System.lineSeparator();
+
+    private final NioCommandServer mServer;
+    private final SocketChannel mSocketChannel;
+    private final SelectionKey mKey;
+    private final CommandDispatcher mDispatcher;
+
+    private final ByteBuffer mInBuffer = ByteBuffer.allocate(1024);
+    private final ByteArrayOutputStream mLine = new ByteArrayOutputStream();
+
+    private final Deque<String> mCommands = new ArrayDeque<>();
+    private final AtomicBoolean mDispatching = new AtomicBoolean();
+
+    private final Deque<ByteBuffer> mOutQueue = new ArrayDeque<>();
+    private int mOutPending;    // bytes in mOutQueue not yet written
+    private volatile boolean mCloseRequested;
+
+    NioCommandChannel(NioCommandServer server, SocketChannel socketChannel, SelectionKey key, boolean isGateway) {
+        mServer = server;
+        mSocketChannel = socketChannel;
+        mKey = key;
+        mDispatcher = new CommandDispatcher(this, isGateway);
+    }
+
+    /**
+     * Closes the channel once any replies already queued have been sent.
+     */
+    @Override
+    void close() {
+        mCloseRequested = true;
+        mServer.requestWrite(this);
+    }
+
+    @Override
+    String getCommand() {
+        String cmd;
+        boolean resumeReading;
+        synchronized (mCommands) {
+            resumeReading = (mCommands.size() == MAX_QUEUED_COMMANDS);
+            cmd = mCommands.poll();
+        }
+        if (resumeReading) mServer.requestWrite(this);
+        return cmd;
+    }
+
+    @Override
+    void reply(String message, boolean addNewline) {
+        if (mCloseRequested) return;
+        ByteBuffer buffer = ByteBuffer.wrap((addNewline ? message + NEWLINE : message).getBytes(CHARSET));
+        synchronized (mOutQueue) {
+            mOutQueue.add(buffer);
+            mOutPending += buffer.remaining();
+        }
+        mServer.requestWrite(this);
+    }
+
+    @Override
+    boolean isOutputBacklogged() {
+        synchronized (mOutQueue) {
+            return mOutPending >= EVENT_OUTPUT_LIMIT;
+        }
+    }
+
+    /*
+     * The following methods are only called on the selector thread.
+     */
+
+    void closeNow() {
+        EventPublisher.getInstance().unsubscribe(this);
+        mKey.cancel();
+        try {
+            mSocketChannel.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    /**
+     * Reads whatever is available from the socket and queues any complete
+     * command lines for execution.
+     * @return
+     * false if the client has closed the connection
+     * @throws IOException 
+     */
+    boolean readAvailable() throws IOException {
+        int count = mSocketChannel.read(mInBuffer);
+        if (count < 0) return false;
+
+        mInBuffer.flip();
+        while (mInBuffer.hasRemaining()) {
+            byte b = mInBuffer.get();
+            if (b == '\n') {
+                lineReceived();
+            } else if (mLine.size() >= MAX_COMMAND_LENGTH) {
+                Utils.logError("IBControllerServer: command exceeds " + MAX_COMMAND_LENGTH + " characters: connection closed");
+                writeNack("Command too long");
+                close();
+                break;
+            } else {
+                mLine.write(b);
+            }
+        }
+        mInBuffer.clear();
+        updateInterest();
+        return true;
+    }
+
+    /**
+     * Writes as much queued output as the socket will accept.
+     * @throws IOException 
+     */
+    void writePending() throws IOException {
+        boolean drained;
+        synchronized (mOutQueue) {
+            boolean wasBacklogged = (mOutPending >= EVENT_OUTPUT_LIMIT);
+            while (!mOutQueue.isEmpty()) {
+                ByteBuffer buffer = mOutQueue.peek();
+                mOutPending -= mSocketChannel.write(buffer);
+                if (buffer.hasRemaining()) break;
+                mOutQueue.poll();
+            }
+            drained = wasBacklogged && mOutPending < EVENT_OUTPUT_LIMIT;
+        }
+        if (drained) EventPublisher.getInstance().outputDrained(this);
+        updateInterest();
+    }
+
+    /**
+     * Adjusts the operations the selector waits for to reflect whether there
+     * is output waiting to be sent and whether further commands can be 
+     * accepted, and completes a requested close when there is no output 
+     * waiting.
+     */
+    void updateInterest() {
+        if (!mKey.isValid()) return;
+        boolean outputPending;
+        boolean outputBacklogged;
+        synchronized (mOutQueue) {
+            outputPending = !mOutQueue.isEmpty();
+            outputBacklogged = (mOutPending >= MAX_PENDING_OUTPUT);
+        }
+        boolean commandsBacklogged;
+        synchronized (mCommands) {
+            commandsBacklogged = (mCommands.size() >= MAX_QUEUED_COMMANDS);
+        }
+
+        if (!outputPending && mCloseRequested) {
+            closeNow();
+            return;
+        }
+        int ops = (outputBacklogged || commandsBacklogged) ? 0 : SelectionKey.OP_READ;
+        if (outputPending) ops |= SelectionKey.OP_WRITE;
+        mKey.interestOps(ops);
+    }
+
+    private void lineReceived() {
+        String cmd = new String(mLine.toByteArray(), CHARSET);
+        mLine.reset();
+        if (cmd.endsWith("\r")) cmd = cmd.substring(0, cmd.length() - 1);
+
+        // blank lines are queued too, so that the prompt they elicit is
+        // correctly ordered with respect to the replies to earlier commands
+        if (!cmd.trim().isEmpty()) Utils.logToConsole("IBControllerServer received command: " + cmd);
+        synchronized (mCommands) {
+            mCommands.add(cmd);
+        }
+        scheduleDispatch();
+    }
+
+    private void scheduleDispatch() {
+        if (!mDispatching.compareAndSet(false, true)) return;
+        MyCachedThreadPool.getInstance().execute(new Runnable() {
+            @Override
+            public void run() {
+                dispatchPending();
+            }
+        });
+    }
+
+    private void dispatchPending() {
+        try {
+            String cmd = getCommand();
+            while (cmd != null && !mCloseRequested) {
+                if (cmd.trim().isEmpty()) {
+                    // just re-issue the prompt
+                } else if (!mDispatcher.dispatch(cmd)) {
+                    close();
+                    return;
+                }
+                writePrompt();
+                cmd = getCommand();
+            }
+        } finally {
+            mDispatching.set(false);
+        }
+
+        // a command may have arrived after the last poll but before 
+        // mDispatching was cleared
+        boolean commandsWaiting;
+        synchronized (mCommands) {
+            commandsWaiting = !mCommands.isEmpty();
+        }
+        if (commandsWaiting) scheduleDispatch();
+    }
+
+}
@@ -0,0 +1,197 @@
+// This file is part of the "IBController".
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2016 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBController is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBController is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBController.  If not, see <http://www.gnu.org/licenses/>.
+
+package ibcontroller;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Services all IBControllerServer connections from a single thread using a
+ * java.nio Selector.
+ * 
+ * Accepting connections, reading commands and writing replies never block,
+ * so any number of idle connections can be held open without tying up a thread
+ * for each. Commands themselves are executed on pool threads (see 
+ * NioCommandChannel), since many of them have to wait for TWS.
+ */
+final class NioCommandServer {
+
+    private final Selector mSelector;
+    private final IBControllerServer mServer;
+    private final boolean isGateway;
+
+    private final Queue<NioCommandChannel> mWriteRequests = new ConcurrentLinkedQueue<>();
+
+    private ServerSocketChannel mLocalChannel;
+
+    private volatile boolean mQuitting;
+
+    NioCommandServer(IBControllerServer server, boolean isGateway) throws IOException {
+        mSelector = Selector.open();
+        mServer = server;
+        this.isGateway = isGateway;
+    }
+
+    /**
+     * Starts accepting connections on the specified channel.
+     * @param serverChannel
+     * a bound ServerSocketChannel
+     * @throws IOException 
+     */
+    void listen(ServerSocketChannel serverChannel) throws IOException {
+        serverChannel.configureBlocking(false);
+        serverChannel.register(mSelector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * Starts accepting connections on the specified Unix domain socket 
+     * channel. Connections on this channel are not subject to the 
+     * IbControlFrom setting: access is controlled by the permissions of 
+     * the socket file.
+     * @param serverChannel
+     * a bound Unix domain ServerSocketChannel
+     * @throws IOException 
+     */
+    void listenLocal(ServerSocketChannel serverChannel) throws IOException {
+        mLocalChannel = serverChannel;
+        listen(serverChannel);
+    }
+
+    /**
+     * Runs the event loop on the calling thread until shutdown() is called.
+     */
+    void run() {
+        while (!mQuitting) {
+            try {
+                mSelector.select();
+            } catch (IOException e) {
+                Utils.logException(e);
+                break;
+            }
+
+            processWriteRequests();
+
+            Iterator<SelectionKey> it = mSelector.selectedKeys().iterator();
+            while (it.hasNext()) {
+                SelectionKey key = it.next();
+                it.remove();
+                if (key.isValid()) handleKey(key);
+            }
+        }
+        closeAll();
+    }
+
+    /**
+     * Stops the event loop. The loop is woken immediately rather than at
+     * the next network event.
+     */
+    void shutdown() {
+        mQuitting = true;
+        mSelector.wakeup();
+    }
+
+    /**
+     * Called (on any thread) when the specified channel has output to
+     * send, is to be closed, or can accept commands again.
+     * @param channel 
+     * the channel concerned
+     */
+    void requestWrite(NioCommandChannel channel) {
+        mWriteRequests.add(channel);
+        mSelector.wakeup();
+    }
+
+    private void accept(SelectionKey key) throws IOException {
+        SocketChannel socketChannel = ((ServerSocketChannel) key.channel()).accept();
+        if (socketChannel == null) return;
+
+        if (key.channel() == mLocalChannel) {
+            Utils.logToConsole("IBControllerServer accepted local connection");
+        } else {
+            InetAddress address = socketChannel.socket().getInetAddress();
+            if (!mServer.isAllowed(address)) {
+                Utils.logToConsole("IBControllerServer denied access to: " + address.toString());
+                socketChannel.close();
+                return;
+            }
+
+            Utils.logToConsole("IBControllerServer accepted connection from: " + address.getHostAddress());
+        }
+        socketChannel.configureBlocking(false);
+        SelectionKey clientKey = socketChannel.register(mSelector, SelectionKey.OP_READ);
+        NioCommandChannel channel = new NioCommandChannel(this, socketChannel, clientKey, isGateway);
+        clientKey.attach(channel);
+        channel.writeGreeting();
+    }
+
+    private void closeAll() {
+        for (SelectionKey key : mSelector.keys()) {
+            try {
+                key.channel().close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+        try {
+            mSelector.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    private void handleKey(SelectionKey key) {
+        NioCommandChannel channel = (NioCommandChannel) key.attachment();
+        try {
+            if (key.isAcceptable()) {
+                accept(key);
+                return;
+            }
+            if (key.isReadable() && !channel.readAvailable()) {
+                channel.closeNow();
+                return;
+            }
+            if (key.isValid() && key.isWritable()) channel.writePending();
+        } catch (CancelledKeyException e) {
+            // the channel was closed while its key was being processed
+        } catch (IOException e) {
+            // most likely the connection was reset by the client
+            if (channel != null) channel.closeNow();
+        }
+    }
+
+    private void processWriteRequests() {
+        NioCommandChannel channel;
+        while ((channel = mWriteRequests.poll()) != null) {
+            try {
+                channel.updateInterest();
+            } catch (CancelledKeyException e) {
+                // the channel has already been closed
+            }
+        }
+    }
+
+}
@@ -42,6 +42,11 @@ public class NonBrokerageAccountDialogHandler  implements WindowHandler {
         }
     }
 
+    @Override
+    public WindowHandlerHints getHints() {
+        return WindowHandlerHints.forDialogs().onEvents(WindowEvent.WINDOW_OPENED);
+    }
+
     @Override
     public boolean recogniseWindow(Window window) {
         if (! (window instanceof JDialog)) return false;
@@ -55,6 +55,10 @@ class NotCurrentlyAvailableDialogHandler implements WindowHandler {
         }
     }
 
+    public WindowHandlerHints getHints() {
+        return WindowHandlerHints.forDialogs().onEvents(WindowEvent.WINDOW_OPENED, WindowEvent.WINDOW_ACTIVATED).withTitlesContaining("Login").onEventDispatchThread();
+    }
+
     public boolean recogniseWindow(Window window) {
         if (! (window instanceof JDialog)) return false;
 
@@ -40,6 +40,10 @@ public class PasswordExpiryWarningFrameHandler  implements WindowHandler {
         }
     }
 
+    public WindowHandlerHints getHints() {
+        return WindowHandlerHints.forFrames().onEvents(WindowEvent.WINDOW_OPENED, WindowEvent.WINDOW_ACTIVATED).withTitlesContaining("Password Notice");
+    }
+
     public boolean recogniseWindow(Window window) {
         if (! (window instanceof JFrame)) return false;
 
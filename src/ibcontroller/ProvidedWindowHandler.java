@@ -0,0 +1,124 @@
+// This file is part of the "IBController".
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2016 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBController is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBController is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBController.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package ibcontroller;
+
+import java.awt.Window;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * Wraps a handler supplied by a WindowHandlerProvider, creating the 
+ * handler when the first event that it is interested in occurs.
+ */
+final class ProvidedWindowHandler implements WindowHandler {
+
+    private final WindowHandlerProvider provider;
+    private final WindowHandlerHints hints;
+    private WindowHandlerProvider.Handler handler;
+    private boolean failed;
+
+    private ProvidedWindowHandler(WindowHandlerProvider provider) {
+        this.provider = provider;
+        int[] eventIDs = provider.getEventIDs();
+        WindowHandlerHints h = (eventIDs == null || eventIDs.length == 0) ? 
+                WindowHandlerHints.NONE : 
+                WindowHandlerHints.forAnyWindow().onEvents(eventIDs);
+        if (provider.requiresEventDispatchThread()) h = h.onEventDispatchThread();
+
+        // provided handlers must keep their place after the built-in handlers
+        this.hints = h.pinned();
+    }
+
+    /**
+     * Finds the WindowHandlerProviders on the classpath, and returns a 
+     * handler for each one that applies to the current mode.
+     * @param isGateway
+     * true if running the Gateway; false if running TWS
+     * @return
+     * the handlers, in the order in which the providers were found
+     */
+    static List<WindowHandler> loadAll(boolean isGateway) {
+        List<WindowHandler> handlers = new ArrayList<>();
+        int mode = isGateway ? WindowHandlerProvider.GATEWAY : WindowHandlerProvider.TWS;
+
+        Iterator<WindowHandlerProvider> it = ServiceLoader.load(WindowHandlerProvider.class).iterator();
+        for (;;) {
+            try {
+                if (!it.hasNext()) break;
+                WindowHandlerProvider provider = it.next();
+                if ((provider.getModes() & mode) == 0) {
+                    Utils.logToConsole("window handler " + provider.getClass().getName() + " does not apply to " + (isGateway ? "the Gateway" : "TWS"));
+                    continue;
+                }
+                handlers.add(new ProvidedWindowHandler(provider));
+                Utils.logToConsole("registered window handler " + provider.getClass().getName());
+            } catch (ServiceConfigurationError e) {
+                Utils.logError("could not load window handler provider: " + e.getMessage());
+            }
+        }
+        return handlers;
+    }
+
+    /**
+     * Returns the name of the provider's class, which identifies the handler.
+     */
+    String getName() {
+        return provider.getClass().getName();
+    }
+
+    private synchronized WindowHandlerProvider.Handler getHandler() {
+        if (handler == null && !failed) {
+            try {
+                handler = provider.createHandler();
+                if (handler == null) throw new IllegalStateException("createHandler() returned null");
+            } catch (RuntimeException e) {
+                Utils.logError("window handler provider " + getName() + " failed, and will be ignored: " + e);
+                failed = true;
+            }
+        }
+        return handler;
+    }
+
+    @Override
+    public boolean filterEvent(Window window, int eventId) {
+        WindowHandlerProvider.Handler h = getHandler();
+        return h != null && h.filterEvent(window, eventId);
+    }
+
+    @Override
+    public void handleWindow(Window window, int eventID) {
+        WindowHandlerProvider.Handler h = getHandler();
+        if (h != null) h.handleWindow(window, eventID);
+    }
+
+    @Override
+    public boolean recogniseWindow(Window window) {
+        WindowHandlerProvider.Handler h = getHandler();
+        return h != null && h.recogniseWindow(window);
+    }
+
+    @Override
+    public WindowHandlerHints getHints() {
+        return hints;
+    }
+}
@@ -0,0 +1,76 @@
+// This file is part of the "IBController".
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2016 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBController is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBController is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBController.  If not, see <http://www.gnu.org/licenses/>.
+
+package ibcontroller;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A CommandChannel that records the replies to a command instead of sending
+ * them anywhere, so that they can be retrieved later (see CommandJobTable).
+ */
+final class RecordingCommandChannel extends CommandChannel {
+
+    private static final int MAX_INFO_MESSAGES = 50;
+
+    private final List<String> mInfo = new ArrayList<>();
+    private String mReply;
+
+    @Override
+    void close() {
+    }
+
+    @Override
+    String getCommand() {
+        return null;
+    }
+
+    @Override
+    void writePrompt() {
+    }
+
+    @Override
+    synchronized void reply(String message, boolean addNewline) {
+        if (message.startsWith("INFO ")) {
+            if (mInfo.size() < MAX_INFO_MESSAGES) mInfo.add(message);
+        } else {
+            mReply = message;
+        }
+    }
+
+    /**
+     * Returns the final reply to the command.
+     * @return
+     * the most recent OK or ERROR reply, or null if there hasn't been one
+     */
+    synchronized String getReply() {
+        return mReply;
+    }
+
+    /**
+     * Returns the intermediate information messages sent by the command.
+     * @return
+     * the INFO replies, in the order they were sent
+     */
+    synchronized List<String> getInfo() {
+        return Collections.unmodifiableList(new ArrayList<>(mInfo));
+    }
+
+}
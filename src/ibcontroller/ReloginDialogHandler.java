@@ -58,6 +58,11 @@ public class ReloginDialogHandler implements WindowHandler {
         }
 }
 
+    @Override
+    public WindowHandlerHints getHints() {
+        return WindowHandlerHints.forDialogs().onEvents(WindowEvent.WINDOW_OPENED).withTitlesContaining("Re-login is required");
+    }
+
     @Override
     public boolean recogniseWindow(Window window) {
         if (! (window instanceof JDialog)) return false;
@@ -0,0 +1,343 @@
+// This file is part of the "IBController".
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2016 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBController is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBController is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBController.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package ibcontroller;
+
+import java.awt.Toolkit;
+import java.awt.Window;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import javax.swing.JDialog;
+import javax.swing.JFrame;
+
+/**
+ * A window handler defined by a rule in the IBController.ini file (the 
+ * WindowRule1, WindowRule2, ... settings) or in the file named by the 
+ * WindowRulesFile setting, rather than by a Java class. This allows 
+ * IBController to deal with simple new TWS dialogs without being rebuilt.
+ * 
+ * A rule consists of clauses separated by semicolons, for example:
+ * 
+ *     dialog; opened; title=^Tip of the Day$; click=Close
+ * 
+ * The available clauses are:
+ * 
+ *     frame | dialog | window   the kind of window (default window)
+ *     opened | activated | closing | closed
+ *                               the event(s) to react to (default opened)
+ *     title=regex               the window title must match regex (which is 
+ *                               searched for anywhere in the title unless 
+ *                               anchored with ^ and $)
+ *     label=text                the window must contain a label whose text
+ *                               contains text
+ *     find=selector             the window must contain a component matching
+ *                               selector (see {@link ComponentSelector})
+ *     click=text                click the button labelled text
+ *     press=selector            click the button matching selector
+ *     check=text                select the checkbox labelled text
+ *     uncheck=text              deselect the checkbox labelled text
+ *     close                     close the window
+ *     log                       log that the rule has matched
+ * 
+ * A rule must have at least one action (click, press, check, uncheck, close
+ * or log), and the actions are performed in the order given. Regular 
+ * expressions and selectors are compiled when the rule is loaded, and a 
+ * rule whose title is a plain anchored string is indexed by TwsListener 
+ * just like the built-in handlers. Since clauses are separated by 
+ * semicolons, a selector cannot contain one.
+ */
+class RuleWindowHandler implements WindowHandler {
+
+    private interface Action {
+        boolean perform(Window window);
+    }
+
+    private final String name;
+    private final String definition;
+    private Class<? extends Window> windowClass = Window.class;
+    private final List<Integer> events = new ArrayList<>();
+    private Pattern titlePattern;
+    private String exactTitle;
+    private final List<String> labels = new ArrayList<>();
+    private final List<ComponentSelector> selectors = new ArrayList<>();
+    private final List<Action> actions = new ArrayList<>();
+    private final List<String> actionDescriptions = new ArrayList<>();
+
+    private RuleWindowHandler(String name, String definition) {
+        this.name = name;
+        this.definition = definition;
+    }
+
+    /**
+     * Loads the rules from the WindowRule<n> settings (numbered from 1 
+     * until the first one that is missing), followed by those in the file 
+     * named by the WindowRulesFile setting. Invalid rules are logged and 
+     * ignored.
+     * @return
+     * a handler for each valid rule, in the order in which they were defined
+     */
+    static List<WindowHandler> fromSettings() {
+        List<WindowHandler> handlers = new ArrayList<>();
+
+        for (int i = 1; ; i++) {
+            String definition = Settings.settings().getString("WindowRule" + i, "");
+            if (definition.trim().isEmpty()) break;
+            addRule(handlers, "WindowRule" + i, definition);
+        }
+
+        String rulesFile = Settings.settings().getString("WindowRulesFile", "");
+        if (!rulesFile.isEmpty()) {
+            try {
+                List<String> lines = Files.readAllLines(Paths.get(rulesFile), StandardCharsets.UTF_8);
+                for (int i = 0; i < lines.size(); i++) {
+                    String definition = lines.get(i).trim();
+                    if (definition.isEmpty() || definition.startsWith("#")) continue;
+                    addRule(handlers, rulesFile + " line " + (i + 1), definition);
+                }
+            } catch (IOException e) {
+                Utils.logError("could not read WindowRulesFile " + rulesFile + ": " + e.getMessage());
+            }
+        }
+
+        return handlers;
+    }
+
+    private static void addRule(List<WindowHandler> handlers, String name, String definition) {
+        try {
+            handlers.add(parse(name, definition));
+            Utils.logToConsole("loaded window rule " + name + ": " + definition);
+        } catch (IBControllerException e) {
+            Utils.logError("window rule " + name + " is invalid and will be ignored: " + e.getMessage());
+        }
+    }
+
+    static RuleWindowHandler parse(String name, String definition) throws IBControllerException {
+        RuleWindowHandler rule = new RuleWindowHandler(name, definition);
+
+        for (String clause : definition.split(";")) {
+            clause = clause.trim();
+            if (clause.isEmpty()) continue;
+
+            int equals = clause.indexOf('=');
+            String key = ((equals < 0) ? clause : clause.substring(0, equals)).trim().toLowerCase(Locale.ROOT);
+            final String value = (equals < 0) ? null : clause.substring(equals + 1).trim();
+
+            if (value == null) {
+                rule.parseKeyword(key);
+            } else if (value.isEmpty()) {
+                throw new IBControllerException("no value for " + key);
+            } else {
+                rule.parseSetting(key, value);
+            }
+        }
+
+        if (rule.actions.isEmpty()) throw new IBControllerException("no action specified");
+        if (rule.events.isEmpty()) rule.events.add(WindowEvent.WINDOW_OPENED);
+        return rule;
+    }
+
+    private void parseKeyword(String keyword) throws IBControllerException {
+        switch (keyword) {
+            case "frame":
+                windowClass = JFrame.class;
+                break;
+            case "dialog":
+                windowClass = JDialog.class;
+                break;
+            case "window":
+                windowClass = Window.class;
+                break;
+            case "opened":
+                events.add(WindowEvent.WINDOW_OPENED);
+                break;
+            case "activated":
+                events.add(WindowEvent.WINDOW_ACTIVATED);
+                break;
+            case "closing":
+                events.add(WindowEvent.WINDOW_CLOSING);
+                break;
+            case "closed":
+                events.add(WindowEvent.WINDOW_CLOSED);
+                break;
+            case "close":
+                addAction("close", new Action() {
+                    @Override
+                    public boolean perform(Window window) {
+                        Toolkit.getDefaultToolkit().getSystemEventQueue().postEvent(new WindowEvent(window, WindowEvent.WINDOW_CLOSING));
+                        return true;
+                    }
+                });
+                break;
+            case "log":
+                addAction("log", new Action() {
+                    @Override
+                    public boolean perform(Window window) {
+                        Utils.logToConsole("window rule " + name + " matched window entitled: " + SwingUtils.getWindowTitle(window));
+                        return true;
+                    }
+                });
+                break;
+            default:
+                throw new IBControllerException("unknown clause " + keyword);
+        }
+    }
+
+    private void parseSetting(String key, final String value) throws IBControllerException {
+        switch (key) {
+            case "title":
+                if (titlePattern != null) throw new IBControllerException("more than one title");
+                try {
+                    titlePattern = Pattern.compile(value);
+                } catch (PatternSyntaxException e) {
+                    throw new IBControllerException("invalid title pattern: " + e.getDescription());
+                }
+                exactTitle = literalTitle(value);
+                break;
+            case "label":
+                labels.add(value);
+                break;
+            case "find":
+                selectors.add(compileSelector(value));
+                break;
+            case "click":
+                addAction("click " + value, new Action() {
+                    @Override
+                    public boolean perform(Window window) {
+                        return SwingUtils.clickButton(window, value);
+                    }
+                });
+                break;
+            case "press":
+                final ComponentSelector selector = compileSelector(value);
+                addAction("press " + value, new Action() {
+                    @Override
+                    public boolean perform(Window window) {
+                        return SwingUtils.clickButton(window, selector);
+                    }
+                });
+                break;
+            case "check":
+            case "uncheck":
+                final boolean selected = key.equals("check");
+                addAction(key + " " + value, new Action() {
+                    @Override
+                    public boolean perform(Window window) {
+                        return SwingUtils.setCheckBoxSelected(window, value, selected);
+                    }
+                });
+                break;
+            default:
+                throw new IBControllerException("unknown clause " + key);
+        }
+    }
+
+    private static ComponentSelector compileSelector(String selector) throws IBControllerException {
+        try {
+            return ComponentSelector.compile(selector);
+        } catch (IllegalArgumentException e) {
+            throw new IBControllerException(e.getMessage());
+        }
+    }
+
+    private void addAction(String description, Action action) {
+        actionDescriptions.add(description);
+        actions.add(action);
+    }
+
+    /*
+     * If the pattern matches exactly one string (ie it is anchored at both ends
+     * and contains no other regular expression syntax), returns that string so
+     * that the rule can be indexed by title; otherwise returns null.
+     */
+    private static String literalTitle(String pattern) {
+        if (pattern.length() < 2 || !pattern.startsWith("^") || !pattern.endsWith("$")) return null;
+        String body = pattern.substring(1, pattern.length() - 1);
+        for (int i = 0; i < body.length(); i++) {
+            if ("\\.[]{}()*+?^$|".indexOf(body.charAt(i)) >= 0) return null;
+        }
+        return body;
+    }
+
+    @Override
+    public boolean filterEvent(Window window, int eventId) {
+        return events.contains(eventId);
+    }
+
+    @Override
+    public WindowHandlerHints getHints() {
+        WindowHandlerHints hints;
+        if (windowClass == JFrame.class) {
+            hints = WindowHandlerHints.forFrames();
+        } else if (windowClass == JDialog.class) {
+            hints = WindowHandlerHints.forDialogs();
+        } else {
+            hints = WindowHandlerHints.forAnyWindow();
+        }
+
+        int[] eventIds = new int[events.size()];
+        for (int i = 0; i < eventIds.length; i++) eventIds[i] = events.get(i);
+        hints = hints.onEvents(eventIds);
+
+        if (exactTitle != null) hints = hints.withTitles(exactTitle);
+
+        // rules must stay after the built-in handlers and in the order defined
+        return hints.pinned();
+    }
+
+    @Override
+    public void handleWindow(Window window, int eventID) {
+        for (int i = 0; i < actions.size(); i++) {
+            if (!actions.get(i).perform(window)) {
+                Utils.logError("window rule " + name + " could not " + actionDescriptions.get(i) + " in window entitled: " + SwingUtils.getWindowTitle(window));
+                return;
+            }
+        }
+    }
+
+    @Override
+    public boolean recogniseWindow(Window window) {
+        if (!windowClass.isInstance(window)) return false;
+
+        if (titlePattern != null) {
+            String title = SwingUtils.getWindowTitle(window);
+            if (title == null || !titlePattern.matcher(title).find()) return false;
+        }
+
+        for (String label : labels) {
+            if (SwingUtils.findLabel(window, label) == null) return false;
+        }
+        for (ComponentSelector selector : selectors) {
+            if (selector.find(window) == null) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "window rule " + name + ": " + definition;
+    }
+}
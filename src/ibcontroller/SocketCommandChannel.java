@@ -0,0 +1,148 @@
+// This file is part of the "IBController".
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2011 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBController is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBController is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBController.  If not, see <http://www.gnu.org/licenses/>.
+
+package ibcontroller;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.Socket;
+import java.net.SocketException;
+
+/**
+ * A CommandChannel over a blocking socket: the thread that calls getCommand()
+ * is blocked until the client sends a command or closes the connection.
+ * 
+ * Replies may be written from several threads at once (see 
+ * TaggedCommandChannel), so writing and closing are synchronized.
+ */
+final class SocketCommandChannel extends CommandChannel {
+
+    private Socket mSocket;
+    private BufferedReader mInstream = null;
+    private BufferedWriter mOutstream = null;
+
+    SocketCommandChannel(Socket socket) {
+
+        mSocket = socket;
+        if (! setupStreams()) return;
+
+        writeGreeting();
+
+    }
+
+    /**
+     * Closes the channel. Calling this more than once has no further effect.
+     */
+    @Override
+    synchronized void close() {
+        if (mSocket == null) return;
+        final Socket socket = mSocket;
+        final BufferedReader instream = mInstream;
+        final BufferedWriter outstream = mOutstream;
+        mSocket = null;
+        mInstream = null;
+        mOutstream = null;
+
+        try {
+            socket.shutdownInput();
+            socket.shutdownOutput();
+
+            if (instream != null) instream.close();
+            if (outstream != null) outstream.close();
+        } catch (SocketException e) {
+            // the socket was reset by the client - ignore
+        } catch (IOException e) {
+            // ignore
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    /**
+     * Ends the input from the client, so that the thread reading commands 
+     * sees the end of the session and closes the channel. Replies can still
+     * be written until then.
+     */
+    @Override
+    synchronized void endInput() {
+        if (mSocket == null) return;
+        try {
+            mSocket.shutdownInput();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    @Override
+    String getCommand() {
+        String cmd = null;
+
+        // the channel may be closed by another thread while this one is reading
+        final BufferedReader instream = mInstream;
+        if (instream == null) return null;
+
+        try {
+            cmd = instream.readLine();
+            while (cmd != null && cmd.trim().isEmpty()) {
+                writePrompt();
+                cmd = instream.readLine();
+            }
+
+            if (cmd != null) Utils.logToConsole("IBControllerServer received command: " + cmd);
+        } catch (SocketException e) {
+            // the socket was reset by the client
+            close();
+        } catch (IOException e) {
+            close();
+        }
+        return cmd;
+    }
+
+    @Override
+    synchronized void reply(String message, boolean addNewline) {
+        if (mOutstream == null) return;
+        try {
+            mOutstream.write(message);
+            if (addNewline) mOutstream.newLine();
+            mOutstream.flush();
+        } catch (SocketException e) {
+            // the socket was reset by the client
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private boolean setupStreams() {
+        try {
+            mInstream = new BufferedReader(new InputStreamReader(mSocket.getInputStream()));
+            mOutstream = new BufferedWriter(new OutputStreamWriter(mSocket.getOutputStream()));
+            return true;
+        } catch (IOException e) {
+            // this is most likely a result of the user closing the command connection
+            return false;
+        }
+    }
+
+}
@@ -48,6 +48,11 @@ public class SplashFrameHandler implements WindowHandler {
         ConfigDialogManager.configDialogManager().setSplashScreenClosed();
     }
 
+    @Override
+    public WindowHandlerHints getHints() {
+        return WindowHandlerHints.forFrames().onEvents(WindowEvent.WINDOW_CLOSED).withTitlesContaining("Starting application...");
+    }
+
     @Override
     public boolean recogniseWindow(Window window) {
         if (! (window instanceof JFrame))  return false;
@@ -20,6 +20,7 @@ package ibcontroller;
 
 import java.awt.Toolkit;
 import java.awt.event.WindowEvent;
+import java.util.concurrent.TimeUnit;
 import javax.swing.JFrame;
 
 class StopTask
@@ -28,9 +29,15 @@ class StopTask
     private static final SwitchLock _Running = new SwitchLock();
 
     private final CommandChannel mChannel;
+    private final Deadline mDeadline;
 
     public StopTask(final CommandChannel channel) {
+        this(channel, Deadline.NONE);
+    }
+
+    StopTask(final CommandChannel channel, final Deadline deadline) {
         mChannel = channel;
+        mDeadline = deadline;
     }
 
     @Override
@@ -41,11 +48,22 @@ class StopTask
         }
 
         try {
+            // get the main window before shutting down the thread pools, since 
+            // this thread may belong to one of them
+            JFrame jf = MainWindowManager.mainWindowManager().getMainWindow(mDeadline.remaining(TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS);
+            if (jf == null) {
+                _Running.clear();
+                Utils.logError("IBControllerServer: STOP timed out waiting for the main window");
+                writeNack("timeout");
+                return;
+            }
+
+            EventPublisher.getInstance().publish(EventPublisher.LIFECYCLE, "STOPPING");
             MyCachedThreadPool.getInstance().shutdownNow();
             MyScheduledExecutorService.getInstance().shutdownNow();
             
             writeInfo("Closing IBController");
-            stop();
+            stop(jf);
         } catch (Exception ex) {
             writeNack(ex.getMessage());
         }
@@ -56,9 +74,7 @@ class StopTask
         return _Running.query();
     }
 
-    private void stop() {
-        JFrame jf = MainWindowManager.mainWindowManager().getMainWindow();
-        
+    private void stop(JFrame jf) {
         WindowEvent wev = new WindowEvent(jf, WindowEvent.WINDOW_CLOSING);
         Toolkit.getDefaultToolkit().getSystemEventQueue().postEvent(wev);
 
@@ -22,6 +22,10 @@ import java.awt.Component;
 import java.awt.Container;
 import java.awt.Window;
 import java.awt.event.WindowEvent;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
 import javax.swing.JComboBox;
@@ -38,6 +42,7 @@ import javax.swing.JSeparator;
 import javax.swing.JTextField;
 import javax.swing.JTree;
 import javax.swing.MenuElement;
+import javax.swing.SwingUtilities;
 import javax.swing.tree.TreeModel;
 
 class SwingUtils {
@@ -54,8 +59,52 @@ class SwingUtils {
      *  true if the button was found;  false if the button was not found
      */
     static boolean clickButton(final Window window, final String buttonText) {
-        final JButton button = findButton(window, buttonText);
+        if (!SwingUtilities.isEventDispatchThread()) {
+            return invokeOnEventDispatchThread(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return clickButton(window, buttonText);
+                }
+            });
+        }
+
+        return clickButton(findButton(window, buttonText), buttonText);
+    }
+
+    /**
+     * Performs a click on the button identified by a selector.
+     * @param container
+     *  the Container containing the button
+     * @param selector
+     *  the selector that identifies the button
+     * @return
+     *  true if the button was found;  false if the button was not found
+     */
+    static boolean clickButton(Container container, ComponentSelector selector) {
+        JButton button = selector.find(container, JButton.class);
+        return clickButton(button, (button == null) ? null : button.getText());
+    }
+
+    /**
+     * Performs a 'click' on a button that has already been found, enabling it
+     * first if necessary.
+     * @param button
+     *  the button, which may be null
+     * @param buttonText
+     *  the button's label, for logging
+     * @return
+     *  true if the button was clicked;  false if it is null
+     */
+    static boolean clickButton(final JButton button, final String buttonText) {
         if (button == null) return false;
+        if (!SwingUtilities.isEventDispatchThread()) {
+            return invokeOnEventDispatchThread(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return clickButton(button, buttonText);
+                }
+            });
+        }
 
         if (! button.isEnabled()) {
             button.setEnabled(true);
@@ -345,6 +394,29 @@ class SwingUtils {
         return (JMenuItem)currentItem;
     }
 
+    /**
+     * Determines whether a JMenuItem is at the specified path, by following
+     * its parent menus up to the menu bar (this doesn't involve searching).
+     * @param menuItem
+     * the JMenuItem
+     * @param path
+     * the required menu path
+     * @return
+     * the JMenuBar containing the JMenuItem, if it is at the specified path;
+     * otherwise null
+     */
+    static JMenuBar getMenuBarAtPath(JMenuItem menuItem, String[] path) {
+        Component current = menuItem;
+        for (int i = path.length - 1; i >= 0; i--) {
+            if (!(current instanceof JMenuItem) || !path[i].equals(((JMenuItem)current).getText())) return null;
+            Container parent = current.getParent();
+            if (i == 0) return (parent instanceof JMenuBar) ? (JMenuBar)parent : null;
+            if (!(parent instanceof JPopupMenu)) return null;
+            current = ((JPopupMenu)parent).getInvoker();
+        }
+        return null;
+    }
+
     /**
      * Traverses a container hierarchy and returns the first JOptionPane
      * it finds.
@@ -477,9 +549,39 @@ class SwingUtils {
      * @return
      * true if the JCheckBox was found; otherwise false
      */
-    static boolean setCheckBoxSelected(Window window, String buttonText, final boolean value) {
-        final JCheckBox cb = findCheckBox(window, buttonText);
+    static boolean setCheckBoxSelected(final Window window, final String buttonText, final boolean value) {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            return invokeOnEventDispatchThread(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return setCheckBoxSelected(window, buttonText, value);
+                }
+            });
+        }
+
+        return setCheckBoxSelected(findCheckBox(window, buttonText), value);
+    }
+
+    /**
+     * Sets or clears a JCheckBox that has already been found.
+     * @param cb
+     * the JCheckBox, which may be null
+     * @param value
+     * true to set the JCheckBox; false to clear it
+     * @return
+     * true if the JCheckBox is not null; otherwise false
+     */
+    static boolean setCheckBoxSelected(final JCheckBox cb, final boolean value) {
         if (cb == null) return false;
+        if (!SwingUtilities.isEventDispatchThread()) {
+            return invokeOnEventDispatchThread(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return setCheckBoxSelected(cb, value);
+                }
+            });
+        }
+
         cb.setSelected(value);
         return true;
     }
@@ -495,9 +597,36 @@ class SwingUtils {
      * @return
      * true if the JRadioButton  was found; otherwise false
      */
-    static boolean setRadioButtonSelected(Window window, String buttonText) {
-        final JRadioButton rb = findRadioButton(window, buttonText);
+    static boolean setRadioButtonSelected(final Window window, final String buttonText) {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            return invokeOnEventDispatchThread(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return setRadioButtonSelected(window, buttonText);
+                }
+            });
+        }
+
+        return setRadioButtonSelected(findRadioButton(window, buttonText));
+    }
+
+    /**
+     * Selects a JRadioButton that has already been found.
+     * @param rb
+     * the JRadioButton, which may be null
+     * @return
+     * true if the JRadioButton is not null; otherwise false
+     */
+    static boolean setRadioButtonSelected(final JRadioButton rb) {
         if (rb == null) return false;
+        if (!SwingUtilities.isEventDispatchThread()) {
+            return invokeOnEventDispatchThread(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return setRadioButtonSelected(rb);
+                }
+            });
+        }
 
         if (rb.isSelected()) return true;
 
@@ -517,14 +646,41 @@ class SwingUtils {
      * @return
      * true if the required JTextField was found; otherwise false
      */
-    static boolean setTextField(Window window, int fieldNumber, final String value) {
-        final JTextField tf = findTextField(window, fieldNumber);
-        if (tf != null) {
-            tf.setText(value);
-            return true;
-        } else {
-            return false;
+    static boolean setTextField(final Window window, final int fieldNumber, final String value) {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            return invokeOnEventDispatchThread(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return setTextField(window, fieldNumber, value);
+                }
+            });
         }
+
+        return setTextField(findTextField(window, fieldNumber), value);
+    }
+
+    /**
+     * Sets a JTextField that has already been found to the given value.
+     * @param tf
+     * the JTextField, which may be null
+     * @param value
+     * the value to be set in the JTextField
+     * @return
+     * true if the JTextField is not null; otherwise false
+     */
+    static boolean setTextField(final JTextField tf, final String value) {
+        if (tf == null) return false;
+        if (!SwingUtilities.isEventDispatchThread()) {
+            return invokeOnEventDispatchThread(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return setTextField(tf, value);
+                }
+            });
+        }
+
+        tf.setText(value);
+        return true;
     }
 
     /**
@@ -582,7 +738,38 @@ class SwingUtils {
         }
     }
 
-    private static String getWindowTitle(Window window) {
+    /*
+     * Runs a task that manipulates Swing components on the event dispatch 
+     * thread, waiting for it to complete. This allows window handlers to use 
+     * the methods in this class when they are not running on the event 
+     * dispatch thread (see the WindowHandlerExecution setting).
+     */
+    private static boolean invokeOnEventDispatchThread(Callable<Boolean> task) {
+        Boolean result = callOnEventDispatchThread(task);
+        return result != null && result;
+    }
+
+    /*
+     * Runs a task on the event dispatch thread, waiting for it to complete, 
+     * and returns its result (or null if the calling thread is interrupted).
+     */
+    static <T> T callOnEventDispatchThread(Callable<T> task) {
+        FutureTask<T> future = new FutureTask<>(task);
+        try {
+            SwingUtilities.invokeAndWait(future);
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (InvocationTargetException | ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    static String getWindowTitle(Window window) {
         String title = null;
         if (window instanceof JDialog) {
             title = ((JDialog)window).getTitle();
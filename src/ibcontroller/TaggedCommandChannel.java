@@ -0,0 +1,122 @@
+// This file is part of the "IBController".
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2016 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBController is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBController is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBController.  If not, see <http://www.gnu.org/licenses/>.
+
+package ibcontroller;
+
+/**
+ * Routes the replies to a tagged command back through the channel on which
+ * the command was received, prefixing each reply with the command's tag.
+ * 
+ * A client tags a command by prefixing it with '#' and a tag of its own 
+ * choosing, for example:
+ * 
+ *      #17 ENABLEAPI
+ * 
+ * to which the final reply might be:
+ * 
+ *      #17 OK configured
+ * 
+ * Tagged commands are executed concurrently, so a client can send any number of 
+ * them without waiting for the replies to earlier ones, and use the tags to 
+ * match up replies that arrive in a different order. At most 
+ * MaxTaggedCommands of them execute at once for each connection: further
+ * commands are not read until one of them finishes. Untagged commands
+ * are processed sequentially as before.
+ */
+final class TaggedCommandChannel extends CommandChannel {
+
+    static final int MAX_TAG_LENGTH = 32;
+
+    private final CommandChannel mChannel;
+    private final String mTag;
+
+    TaggedCommandChannel(CommandChannel channel, String tag) {
+        mChannel = channel;
+        mTag = tag;
+    }
+
+    /**
+     * Indicates whether a command line carries a tag.
+     * @param line
+     * the command line
+     * @return
+     * true if the line starts with a tag
+     */
+    static boolean isTagged(String line) {
+        return line.startsWith("#");
+    }
+
+    /**
+     * Returns the tag from a tagged command line.
+     * @param line
+     * the command line
+     * @return
+     * the tag (without the '#'), or null if the tag is empty or too long
+     */
+    static String getTag(String line) {
+        int end = indexOfWhitespace(line);
+        String tag = line.substring(1, end);
+        if (tag.isEmpty() || tag.length() > MAX_TAG_LENGTH) return null;
+        return tag;
+    }
+
+    /**
+     * Returns the command from a tagged command line.
+     * @param line
+     * the command line
+     * @return
+     * the command, which is empty if the line consists only of a tag
+     */
+    static String getCommand(String line) {
+        return line.substring(indexOfWhitespace(line)).trim();
+    }
+
+    @Override
+    void close() {
+        mChannel.close();
+    }
+
+    @Override
+    String getCommand() {
+        // commands are only ever received via the underlying channel
+        return null;
+    }
+
+    @Override
+    void writePrompt() {
+        // the prompt is only issued for untagged commands
+    }
+
+    @Override
+    void reply(String message, boolean addNewline) {
+        mChannel.reply("#" + mTag + " " + message, addNewline);
+    }
+
+    @Override
+    boolean isOutputBacklogged() {
+        return mChannel.isOutputBacklogged();
+    }
+
+    private static int indexOfWhitespace(String line) {
+        for (int i = 0; i < line.length(); i++) {
+            if (Character.isWhitespace(line.charAt(i))) return i;
+        }
+        return line.length();
+    }
+
+}
@@ -18,7 +18,6 @@
 
 package ibcontroller;
 
-import static ibcontroller.SwingUtils.findCheckBox;
 import java.awt.Window;
 import java.awt.event.WindowEvent;
 import javax.swing.JCheckBox;
@@ -54,19 +53,20 @@ public class TradesFrameHandler implements WindowHandler {
             return;
         }
         if (eventID == WindowEvent.WINDOW_OPENED) {
-            if (findCheckBox(window, "Sun") != null) {
+            ComponentIndex index = ComponentIndex.of(window);
+            if (index.findCheckBox("Sun") != null) {
                 Utils.logToConsole("Setting trades log to show all trades");
                 // TWS versions before 955
-                SwingUtils.setCheckBoxSelected(window, "Sun", true);
-                SwingUtils.setCheckBoxSelected(window, "Mon", true);
-                SwingUtils.setCheckBoxSelected(window, "Tue", true);
-                SwingUtils.setCheckBoxSelected(window, "Wed", true);
-                SwingUtils.setCheckBoxSelected(window, "Thu", true);
-                SwingUtils.setCheckBoxSelected(window, "Fri", true);
-                SwingUtils.setCheckBoxSelected(window, "Sat", true);
-                SwingUtils.setCheckBoxSelected(window, "All", true);
+                index.setCheckBoxSelected("Sun", true);
+                index.setCheckBoxSelected("Mon", true);
+                index.setCheckBoxSelected("Tue", true);
+                index.setCheckBoxSelected("Wed", true);
+                index.setCheckBoxSelected("Thu", true);
+                index.setCheckBoxSelected("Fri", true);
+                index.setCheckBoxSelected("Sat", true);
+                index.setCheckBoxSelected("All", true);
 
-                monitorAllTradesCheckbox(window, "All");
+                monitorAllTradesCheckbox(index.findCheckBox("All"));
 
                 if (! firstTradesWindowOpened) {
                     if (Settings.settings().getBoolean("MinimizeMainWindow", false)) {
@@ -106,6 +106,11 @@ public class TradesFrameHandler implements WindowHandler {
 
     }
 
+    @Override
+    public WindowHandlerHints getHints() {
+        return WindowHandlerHints.forFrames().onEvents(WindowEvent.WINDOW_OPENED, WindowEvent.WINDOW_CLOSING, WindowEvent.WINDOW_CLOSED).withTitlesContaining("Trades").onEventDispatchThread();
+    }
+
     @Override
     public boolean recogniseWindow(Window window) {
         if (! (window instanceof JFrame))  return false;
@@ -113,8 +118,7 @@ public class TradesFrameHandler implements WindowHandler {
         return (SwingUtils.titleContains(window, "Trades"));
     }
 
-    private void monitorAllTradesCheckbox(Window window, String text) {
-        final JCheckBox check = SwingUtils.findCheckBox(window, text);
+    private void monitorAllTradesCheckbox(final JCheckBox check) {
         if (check != null) check.addChangeListener(new ChangeListener() {
             @Override
             public void stateChanged(ChangeEvent ce) {
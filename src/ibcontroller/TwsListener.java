@@ -23,18 +23,53 @@ import java.awt.Window;
 import java.awt.event.AWTEventListener;
 import java.awt.event.WindowEvent;
 import java.util.List;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.swing.JDialog;
 import javax.swing.JFrame;
 
 class TwsListener
         implements AWTEventListener {
 
-    private final List<WindowHandler> windowHandlers;
+    private volatile WindowHandlerIndex windowHandlerIndex;
 
     private final String logComponents;
 
+    private final boolean handleOnWorker;
+
+    private final WindowEventCoalescer coalescer;
+
+    private final WindowEventRecorder recorder;
+
+    private final WindowFingerprintIndex fingerprintIndex;
+
+    private static final AtomicLong eventCount = new AtomicLong();
+    private static final AtomicLong totalNanos = new AtomicLong();
+    private static final AtomicLong maxNanos = new AtomicLong();
+    private static final AtomicLong handledOnEdtCount = new AtomicLong();
+    private static final AtomicLong handledOnWorkerCount = new AtomicLong();
+    private static final AtomicLong coalescedCount = new AtomicLong();
+
     TwsListener (List<WindowHandler> windowHandlers) {
-        this.windowHandlers = windowHandlers;
+        WindowHandlerMetrics.getInstance().register(windowHandlers);
+        WindowHandlerMetrics.getInstance().startLogging();
+
+        String orderingSetting = Settings.settings().getString("WindowHandlerOrdering", "fixed").toLowerCase();
+        switch (orderingSetting) {
+            case "fixed":
+                this.windowHandlerIndex = new WindowHandlerIndex(windowHandlers);
+                break;
+            case "adaptive":
+                startAdaptiveOrdering(windowHandlers);
+                break;
+            default:
+                Utils.logError("the WindowHandlerOrdering setting is invalid.");
+                this.windowHandlerIndex = new WindowHandlerIndex(windowHandlers);
+                break;
+        }
 
         String logComponentsSetting =  Settings.settings().getString("LogComponents", "never").toLowerCase();
         switch (logComponentsSetting) {
@@ -56,28 +91,148 @@ class TwsListener
                 Utils.logError("the LogComponents setting is invalid.");
                 break;
         }
+
+        String executionSetting = Settings.settings().getString("WindowHandlerExecution", "edt").toLowerCase();
+        switch (executionSetting) {
+            case "edt":
+                handleOnWorker = false;
+                break;
+            case "worker":
+                handleOnWorker = true;
+                break;
+            default:
+                handleOnWorker = false;
+                Utils.logError("the WindowHandlerExecution setting is invalid.");
+                break;
+        }
+
+        coalescer = new WindowEventCoalescer(Settings.settings().getInt("WindowEventCoalescingMillis", 0));
+
+        recorder = WindowEventRecorder.fromSettings();
+
+        fingerprintIndex = Settings.settings().getBoolean("WindowFingerprinting", false) ? 
+                new WindowFingerprintIndex(windowHandlers, IBController.getTWSSettingsDirectory()) : 
+                null;
     }
 
     @Override
     public void eventDispatched(AWTEvent event) {
-        int eventID = event.getID();
+        long start = System.nanoTime();
+        try {
+            dispatchWindowEvent(event);
+        } finally {
+            recordDispatchTime(System.nanoTime() - start);
+        }
+    }
 
-        Window window =((WindowEvent) event).getWindow();
+    private void dispatchWindowEvent(AWTEvent event) {
+        final int eventID = event.getID();
+
+        final Window window =((WindowEvent) event).getWindow();
+
+        if (!coalescer.shouldDispatch(window, eventID)) {
+            coalescedCount.incrementAndGet();
+            return;
+        }
+
+        if (recorder != null) recorder.record(window, eventID);
 
         if (eventID == WindowEvent.WINDOW_OPENED ||
                 eventID == WindowEvent.WINDOW_ACTIVATED ||
                 eventID == WindowEvent.WINDOW_CLOSING ||
                 eventID == WindowEvent.WINDOW_CLOSED) {
             logWindow(window, eventID);
+            publishWindowEvent(window, SwingUtils.windowEventToString(eventID).toUpperCase());
         }
 
-        for (WindowHandler wh : windowHandlers) {
-            if (wh.filterEvent(window, eventID) && wh.recogniseWindow(window))  {
-                wh.handleWindow(window, eventID);
-                break;
-            }
+        final WindowHandler wh = recognise(window, eventID);
+        if (wh == null) return;
+
+        if (handleOnWorker && !wh.getHints().requiresEventDispatchThread()) {
+            handledOnWorkerCount.incrementAndGet();
+            WindowHandlerExecutor.instance().execute(window, new Runnable() {
+                @Override
+                public void run() {
+                    handleWindow(wh, window, eventID);
+                }
+            });
+        } else {
+            handledOnEdtCount.incrementAndGet();
+            handleWindow(wh, window, eventID);
         }
+    }
+
+    /**
+     * Finds the window handler that would deal with the specified window and 
+     * event, without asking it to do so.
+     * @param window
+     * the window
+     * @param eventID
+     * the event's ID
+     * @return
+     * the handler, or null if no handler recognises the window for this 
+     * event
+     */
+    WindowHandler recognise(Window window, int eventID) {
+        if (fingerprintIndex != null) return fingerprintIndex.findHandler(window, eventID, windowHandlerIndex);
+        return windowHandlerIndex.findHandler(window, eventID);
+    }
+
+    private void handleWindow(WindowHandler wh, Window window, int eventID) {
+        WindowHandlerMetrics.getInstance().handleWindow(wh, window, eventID);
+        String name = WindowHandlerIndex.getHandlerName(wh);
+        publishWindowEvent(window, "HANDLED " + name.substring(name.lastIndexOf('.') + 1));
+    }
+
+    private static void recordDispatchTime(long nanos) {
+        eventCount.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        long max = maxNanos.get();
+        while (nanos > max && !maxNanos.compareAndSet(max, nanos)) max = maxNanos.get();
+    }
+
+    /**
+     * Returns statistics about the time spent processing window events on the
+     * event dispatch thread.
+     * @return
+     * a map of statistic names to values
+     */
+    static Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new TreeMap<>();
+        long events = eventCount.get();
+        stats.put("events", events);
+        stats.put("totalMillis", TimeUnit.NANOSECONDS.toMillis(totalNanos.get()));
+        stats.put("meanMicros", (events == 0) ? 0 : TimeUnit.NANOSECONDS.toMicros(totalNanos.get() / events));
+        stats.put("maxMillis", TimeUnit.NANOSECONDS.toMillis(maxNanos.get()));
+        stats.put("handledOnEdt", handledOnEdtCount.get());
+        stats.put("handledOnWorker", handledOnWorkerCount.get());
+        stats.put("coalesced", coalescedCount.get());
+        stats.put("fingerprints", WindowFingerprintIndex.getStatistics());
+        return stats;
+    }
+
+    private void startAdaptiveOrdering(List<WindowHandler> windowHandlers) {
+        final AdaptiveHandlerOrder adaptiveOrder = new AdaptiveHandlerOrder(windowHandlers, 
+                Paths.get(IBController.getTWSSettingsDirectory(), "IBControllerWindowHandlers.txt"));
+        windowHandlerIndex = new WindowHandlerIndex(adaptiveOrder.getOrder());
+        Utils.logToConsole("window handler order: " + adaptiveOrder);
+
+        int interval = Settings.settings().getInt("WindowHandlerReorderSeconds", 300);
+        if (interval <= 0) interval = 300;
+        MyScheduledExecutorService.getInstance().scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                if (adaptiveOrder.reorder()) {
+                    windowHandlerIndex = new WindowHandlerIndex(adaptiveOrder.getOrder());
+                    Utils.logToConsole("window handler order: " + adaptiveOrder);
+                }
+            }
+        }, interval, interval, TimeUnit.SECONDS);
+    }
 
+    private void publishWindowEvent(Window window, String event) {
+        String title = SwingUtils.getWindowTitle(window);
+        EventPublisher.getInstance().publish(EventPublisher.WINDOW, event + " " + ((title == null) ? "" : title));
     }
 
     private void logWindow(Window window, int eventID) {
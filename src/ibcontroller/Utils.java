@@ -68,7 +68,7 @@ class Utils {
                     String s = path[0];
                     for (int i = 1; i < path.length; i++) s = s + " > " + path[i];
 
-                    JMenuItem menuItem = SwingUtils.findMenuItemInAnyMenuBar(container, path);
+                    JMenuItem menuItem = MenuPathIndex.getInstance().findMenuItem(container, path);
                     if (menuItem == null) throw new IBControllerException("menu item: " + s);
                     if (!menuItem.isEnabled()) return false;
                     menuItem.doClick();
@@ -178,7 +178,7 @@ class Utils {
     static boolean selectConfigSection(final JDialog configDialog, final String[] path) throws IBControllerException, IllegalStateException {
         if (!SwingUtilities.isEventDispatchThread()) throw new IllegalStateException("selectConfigSection must be run on the event dispatch thread");
         
-        JTree configTree = SwingUtils.findTree(configDialog);
+        JTree configTree = LiveComponentIndex.forWindow(configDialog).findTree();
         if (configTree == null) throw new IBControllerException("could not find the config tree in the Global Configuration dialog");
 
         Object node = configTree.getModel().getRoot();
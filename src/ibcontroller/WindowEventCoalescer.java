@@ -0,0 +1,91 @@
+// This file is part of the "IBController".
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2016 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBController is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBController is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBController.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package ibcontroller;
+
+import java.awt.Window;
+import java.awt.event.WindowEvent;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collapses bursts of identical window events, so that when TWS generates 
+ * many events of the same kind for the same window in quick succession (for 
+ * example WINDOW_ACTIVATED events when a layout is loaded), only the first 
+ * in each interval is logged and offered to the window handlers.
+ * 
+ * WINDOW_OPENED and WINDOW_CLOSED events are never coalesced.
+ * 
+ * This class is intended to be used only on the event dispatch thread, and 
+ * is not thread-safe.
+ */
+class WindowEventCoalescer {
+
+    private static final int EVENT_COUNT = WindowEvent.WINDOW_LAST - WindowEvent.WINDOW_FIRST + 1;
+
+    private final long intervalNanos;
+
+    private final Map<Window, long[]> lastDispatchTimes = new WeakHashMap<>();
+
+    /**
+     * Creates a coalescer.
+     * @param intervalMillis
+     * the interval within which repeated events are collapsed; if zero or 
+     * negative, no events are collapsed
+     */
+    WindowEventCoalescer(int intervalMillis) {
+        intervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(intervalMillis, 0));
+    }
+
+    /**
+     * Indicates whether an event should be dispatched, or dropped because an 
+     * identical event for the same window was dispatched within the interval.
+     * @param window
+     * the window the event relates to
+     * @param eventID
+     * the event's ID
+     * @return
+     * true if the event should be dispatched; false if it should be dropped
+     */
+    boolean shouldDispatch(Window window, int eventID) {
+        if (intervalNanos == 0) return true;
+
+        if (eventID == WindowEvent.WINDOW_CLOSED) {
+            lastDispatchTimes.remove(window);
+            return true;
+        }
+        if (eventID == WindowEvent.WINDOW_OPENED) return true;
+        if (eventID < WindowEvent.WINDOW_FIRST || eventID > WindowEvent.WINDOW_LAST) return true;
+
+        long now = System.nanoTime();
+        long[] times = lastDispatchTimes.get(window);
+        if (times == null) {
+            times = new long[EVENT_COUNT];
+            Arrays.fill(times, now - intervalNanos);
+            lastDispatchTimes.put(window, times);
+        }
+
+        int index = eventID - WindowEvent.WINDOW_FIRST;
+        if (now - times[index] < intervalNanos) return false;
+        times[index] = now;
+        return true;
+    }
+}
@@ -0,0 +1,228 @@
+// This file is part of the "IBController".
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2016 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBController is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBController is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBController.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package ibcontroller;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Window;
+import java.awt.event.WindowEvent;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.WeakHashMap;
+import javax.swing.AbstractButton;
+import javax.swing.JLabel;
+import javax.swing.JMenu;
+import javax.swing.RootPaneContainer;
+import javax.swing.text.JTextComponent;
+
+/**
+ * Records the window events seen by TwsListener, together with the 
+ * component trees of the windows concerned, to the file named by the 
+ * RecordWindowEventsTo setting. The recording can be played back through 
+ * the window handlers with WindowEventReplayer, without needing TWS.
+ * 
+ * The file is plain text. After two header lines (the second giving the 
+ * mode, TWS or Gateway), there is one line per event and one line per 
+ * component, with tab-separated fields:
+ * 
+ *     E  millis  windowId  eventID  windowClass  standardClass  title
+ *     C  depth  componentClass  standardClass  name  text  flags
+ * 
+ * The standard class is the nearest javax.swing or java.awt superclass, 
+ * which is what the replayer instantiates. Component lines follow the 
+ * WINDOW_OPENED and WINDOW_ACTIVATED events to which they belong; depth 1 
+ * components are the window's menu bar (if any) and the children of its 
+ * content pane. The flags are 'e' if the component is enabled and 's' if 
+ * it is a selected button. Tabs, newlines and backslashes in strings are 
+ * escaped with a backslash.
+ * 
+ * The contents of editable text fields are never recorded, so that user 
+ * names and passwords are not written to the file.
+ */
+class WindowEventRecorder {
+
+    static final String HEADER = "# IBController window event recording 1";
+    static final String GATEWAY_MODE = "# mode=gateway";
+    static final String TWS_MODE = "# mode=tws";
+
+    private final BufferedWriter writer;
+    private final long startTime = System.currentTimeMillis();
+    private final Map<Window, Integer> windowIds = new WeakHashMap<>();
+    private int nextWindowId = 1;
+
+    private WindowEventRecorder(BufferedWriter writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Creates a recorder as specified by the RecordWindowEventsTo setting.
+     * @return
+     * the recorder, or null if recording is not required or the file cannot 
+     * be created
+     */
+    static WindowEventRecorder fromSettings() {
+        String path = Settings.settings().getString("RecordWindowEventsTo", "");
+        if (path.isEmpty()) return null;
+        try {
+            BufferedWriter writer = Files.newBufferedWriter(Paths.get(path), StandardCharsets.UTF_8);
+            writer.write(HEADER);
+            writer.newLine();
+            writer.write(MainWindowManager.mainWindowManager().isGateway() ? GATEWAY_MODE : TWS_MODE);
+            writer.newLine();
+            writer.flush();
+            Utils.logToConsole("recording window events to " + path);
+            return new WindowEventRecorder(writer);
+        } catch (IOException e) {
+            Utils.logError("could not create RecordWindowEventsTo file " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Records an event. This must be called on the event dispatch thread.
+     * @param window
+     * the window the event relates to
+     * @param eventID
+     * the event's ID
+     */
+    void record(Window window, int eventID) {
+        Integer windowId = windowIds.get(window);
+        if (windowId == null) {
+            windowId = nextWindowId++;
+            windowIds.put(window, windowId);
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append('E')
+            .append('\t').append(System.currentTimeMillis() - startTime)
+            .append('\t').append(windowId)
+            .append('\t').append(eventID)
+            .append('\t').append(window.getClass().getName())
+            .append('\t').append(standardClass(window).getName())
+            .append('\t').append(escape(SwingUtils.getWindowTitle(window)))
+            .append('\n');
+
+        if (eventID == WindowEvent.WINDOW_OPENED || eventID == WindowEvent.WINDOW_ACTIVATED) {
+            if (window instanceof RootPaneContainer) {
+                RootPaneContainer rpc = (RootPaneContainer) window;
+                if (rpc.getRootPane().getJMenuBar() != null) appendComponent(sb, rpc.getRootPane().getJMenuBar(), 1);
+                appendChildren(sb, rpc.getContentPane(), 1);
+            } else {
+                appendChildren(sb, window, 1);
+            }
+        }
+
+        try {
+            writer.write(sb.toString());
+            writer.flush();
+        } catch (IOException e) {
+            Utils.logError("could not record window event: " + e.getMessage());
+        }
+    }
+
+    private static void appendChildren(StringBuilder sb, Container container, int depth) {
+        Component[] children = (container instanceof JMenu) ? ((JMenu) container).getMenuComponents() : container.getComponents();
+        for (Component child : children) appendComponent(sb, child, depth);
+    }
+
+    private static void appendComponent(StringBuilder sb, Component component, int depth) {
+        sb.append('C')
+            .append('\t').append(depth)
+            .append('\t').append(component.getClass().getName())
+            .append('\t').append(standardClass(component).getName())
+            .append('\t').append(escape(component.getName()))
+            .append('\t').append(escape(getText(component)))
+            .append('\t');
+        if (component.isEnabled()) sb.append('e');
+        if (component instanceof AbstractButton && ((AbstractButton) component).isSelected()) sb.append('s');
+        sb.append('\n');
+
+        if (component instanceof Container) appendChildren(sb, (Container) component, depth + 1);
+    }
+
+    private static String getText(Component component) {
+        if (component instanceof AbstractButton) return ((AbstractButton) component).getText();
+        if (component instanceof JLabel) return ((JLabel) component).getText();
+        if (component instanceof JTextComponent && !((JTextComponent) component).isEditable()) return ((JTextComponent) component).getText();
+        return null;
+    }
+
+    private static Class<?> standardClass(Object object) {
+        Class<?> c = object.getClass();
+        while (!c.getName().startsWith("javax.swing.") && !c.getName().startsWith("java.awt.")) c = c.getSuperclass();
+        return c;
+    }
+
+    static String escape(String s) {
+        if (s == null) return "";
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                default:
+                    sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    static String unescape(String s) {
+        if (s.indexOf('\\') < 0) return s;
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c != '\\' || i == s.length() - 1) {
+                sb.append(c);
+                continue;
+            }
+            c = s.charAt(++i);
+            switch (c) {
+                case 't':
+                    sb.append('\t');
+                    break;
+                case 'n':
+                    sb.append('\n');
+                    break;
+                case 'r':
+                    sb.append('\r');
+                    break;
+                default:
+                    sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,297 @@
+// This file is part of the "IBController".
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2016 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBController is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBController is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBController.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package ibcontroller;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Dialog;
+import java.awt.Frame;
+import java.awt.Window;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.swing.AbstractButton;
+import javax.swing.JDialog;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JMenu;
+import javax.swing.JMenuBar;
+import javax.swing.JPanel;
+import javax.swing.JWindow;
+import javax.swing.RootPaneContainer;
+import javax.swing.SwingUtilities;
+import javax.swing.text.JTextComponent;
+
+/**
+ * Plays back a recording made by WindowEventRecorder (see the 
+ * RecordWindowEventsTo setting) through TwsListener's window recognition, 
+ * without TWS. For each recorded event it rebuilds an equivalent window from
+ * standard Swing components, finds the handler that would deal with it, and 
+ * measures how long that took. Handlers are not asked to handle the 
+ * windows.
+ * 
+ * Usage:
+ * 
+ *     java -cp IBController.jar ibcontroller.WindowEventReplayer recording [settings] [iterations]
+ * 
+ * where settings is the IBController.ini file to use (so that window rules 
+ * and similar settings take effect), and iterations is the number of times
+ * to play the recording (default 1). Events are only listed on the first 
+ * iteration. The handlers used are those for the mode (TWS or Gateway) in 
+ * which the recording was made.
+ * 
+ * The windows are never shown, but AWT cannot create windows at all in 
+ * headless mode, so a display is needed (a virtual display such as Xvfb will
+ * do).
+ */
+public class WindowEventReplayer {
+
+    private static class Node {
+        int depth;
+        String standardClass;
+        String name;
+        String text;
+        String flags;
+        final List<Node> children = new ArrayList<>();
+    }
+
+    private static class Event {
+        int windowId;
+        int eventID;
+        String windowClass;
+        String standardClass;
+        String title;
+        List<Node> components;
+    }
+
+    private final List<Event> events;
+    private final TwsListener listener;
+
+    private WindowEventReplayer(List<Event> events, TwsListener listener) {
+        this.events = events;
+        this.listener = listener;
+    }
+
+    public static void main(final String[] args) throws Exception {
+        if (args.length < 1 || args.length > 3) {
+            System.err.println("Usage: WindowEventReplayer recording [settings] [iterations]");
+            System.exit(1);
+        }
+
+        if (args.length >= 2) Settings.initialise(new DefaultSettings(args[1]));
+        final int iterations = (args.length == 3) ? Integer.parseInt(args[2]) : 1;
+
+        List<String> lines = Files.readAllLines(Paths.get(args[0]), StandardCharsets.UTF_8);
+        boolean isGateway = lines.contains(WindowEventRecorder.GATEWAY_MODE);
+        final List<Event> events = load(lines);
+        final TwsListener listener = new TwsListener(IBController.createWindowHandlers(isGateway));
+
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override
+            public void run() {
+                WindowEventReplayer replayer = new WindowEventReplayer(events, listener);
+                for (int i = 1; i <= iterations; i++) replayer.play(i, i == 1);
+            }
+        });
+        System.exit(0);
+    }
+
+    private static List<Event> load(List<String> lines) throws IOException {
+        List<Event> events = new ArrayList<>();
+        Event event = null;
+        List<Node> stack = new ArrayList<>();
+
+        for (String line : lines) {
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] fields = line.split("\t", -1);
+            if (fields[0].equals("E") && fields.length == 7) {
+                event = new Event();
+                event.windowId = Integer.parseInt(fields[2]);
+                event.eventID = Integer.parseInt(fields[3]);
+                event.windowClass = fields[4];
+                event.standardClass = fields[5];
+                event.title = WindowEventRecorder.unescape(fields[6]);
+                events.add(event);
+                stack.clear();
+            } else if (fields[0].equals("C") && fields.length == 7 && event != null) {
+                Node node = new Node();
+                node.depth = Integer.parseInt(fields[1]);
+                node.standardClass = fields[3];
+                node.name = fields[4].isEmpty() ? null : WindowEventRecorder.unescape(fields[4]);
+                node.text = fields[5].isEmpty() ? null : WindowEventRecorder.unescape(fields[5]);
+                node.flags = fields[6];
+                if (event.components == null) event.components = new ArrayList<>();
+                while (stack.size() >= node.depth) stack.remove(stack.size() - 1);
+                if (stack.isEmpty()) {
+                    event.components.add(node);
+                } else {
+                    stack.get(stack.size() - 1).children.add(node);
+                }
+                stack.add(node);
+            } else {
+                throw new IOException("invalid recording line: " + line);
+            }
+        }
+        return events;
+    }
+
+    private void play(int iteration, boolean listEvents) {
+        Map<Integer, Window> windows = new HashMap<>();
+        long totalNanos = 0;
+        long maxNanos = 0;
+        int recognised = 0;
+
+        for (int i = 0; i < events.size(); i++) {
+            Event event = events.get(i);
+            Window window = windows.get(event.windowId);
+            if (window == null) {
+                window = createWindow(event);
+                windows.put(event.windowId, window);
+            }
+            setTitle(window, event.title);
+            if (event.components != null) populate(window, event.components);
+
+            long start = System.nanoTime();
+            WindowHandler handler = listener.recognise(window, event.eventID);
+            long elapsed = System.nanoTime() - start;
+
+            totalNanos += elapsed;
+            maxNanos = Math.max(maxNanos, elapsed);
+            if (handler != null) recognised++;
+
+            if (listEvents) {
+                System.out.println((i + 1) + "\t" + SwingUtils.windowEventToString(event.eventID) + 
+                        "\t" + event.windowClass + 
+                        "\t" + event.title + 
+                        "\t" + ((handler == null) ? "-" : handler.getClass().getSimpleName()) + 
+                        "\t" + TimeUnit.NANOSECONDS.toMicros(elapsed) + "us");
+            }
+        }
+
+        for (Window window : windows.values()) window.dispose();
+
+        System.out.println("iteration " + iteration + 
+                ": events=" + events.size() + 
+                " recognised=" + recognised + 
+                " totalMicros=" + TimeUnit.NANOSECONDS.toMicros(totalNanos) + 
+                " meanMicros=" + (events.isEmpty() ? 0 : TimeUnit.NANOSECONDS.toMicros(totalNanos / events.size())) + 
+                " maxMicros=" + TimeUnit.NANOSECONDS.toMicros(maxNanos));
+    }
+
+    private static Window createWindow(Event event) {
+        Class<?> c = loadClass(event.standardClass);
+        if (c != null && JDialog.class.isAssignableFrom(c)) return new JDialog((Frame) null, event.title);
+        if (c != null && Dialog.class.isAssignableFrom(c)) return new Dialog((Frame) null, event.title);
+        if (c != null && JFrame.class.isAssignableFrom(c)) return new JFrame(event.title);
+        if (c != null && Frame.class.isAssignableFrom(c)) return new Frame(event.title);
+        return new JWindow();
+    }
+
+    private static void setTitle(Window window, String title) {
+        if (window instanceof Frame) {
+            ((Frame) window).setTitle(title);
+        } else if (window instanceof Dialog) {
+            ((Dialog) window).setTitle(title);
+        }
+    }
+
+    private static void populate(Window window, List<Node> nodes) {
+        Container container = window;
+        if (window instanceof RootPaneContainer) {
+            RootPaneContainer rpc = (RootPaneContainer) window;
+            rpc.getRootPane().setJMenuBar(null);
+            container = new JPanel();
+            rpc.setContentPane((JPanel) container);
+        } else {
+            window.removeAll();
+        }
+
+        for (Node node : nodes) {
+            Component component = createComponent(node);
+            if (component instanceof JMenuBar && window instanceof RootPaneContainer) {
+                ((RootPaneContainer) window).getRootPane().setJMenuBar((JMenuBar) component);
+            } else {
+                addChild(container, component);
+            }
+        }
+    }
+
+    private static Component createComponent(Node node) {
+        Component component = null;
+        Class<?> c = loadClass(node.standardClass);
+        if (c != null && Component.class.isAssignableFrom(c) && !Window.class.isAssignableFrom(c)) {
+            try {
+                component = (Component) c.getConstructor().newInstance();
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                component = null;
+            }
+        }
+        if (component == null) component = new JPanel();
+
+        component.setName(node.name);
+        component.setEnabled(node.flags.indexOf('e') >= 0);
+        if (component instanceof AbstractButton) {
+            ((AbstractButton) component).setText(node.text);
+            ((AbstractButton) component).setSelected(node.flags.indexOf('s') >= 0);
+        } else if (component instanceof JLabel) {
+            ((JLabel) component).setText(node.text);
+        } else if (component instanceof JTextComponent) {
+            ((JTextComponent) component).setText(node.text);
+        }
+
+        if (!node.children.isEmpty() && component instanceof Container) {
+            Container container = (Container) component;
+            if (container instanceof JMenu) {
+                ((JMenu) container).removeAll();
+            } else {
+                container.removeAll();
+            }
+            for (Node child : node.children) addChild(container, createComponent(child));
+        }
+        return component;
+    }
+
+    private static void addChild(Container container, Component child) {
+        try {
+            if (container instanceof JMenu) {
+                ((JMenu) container).add(child);
+            } else {
+                container.add(child);
+            }
+        } catch (RuntimeException e) {
+            System.err.println("could not add " + child.getClass().getName() + " to " + container.getClass().getName() + ": " + e);
+        }
+    }
+
+    private static Class<?> loadClass(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,255 @@
+// This file is part of the "IBController".
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2016 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBController is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBController is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBController.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package ibcontroller;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Window;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.swing.AbstractButton;
+import javax.swing.JLabel;
+import javax.swing.RootPaneContainer;
+
+/**
+ * Remembers which handler recognised windows with a given structural 
+ * fingerprint, so that when a window with the same fingerprint appears 
+ * again (typically in a later session) its handler can be found with a 
+ * single lookup and one call to that handler's recogniseWindow() method, 
+ * rather than by trying each candidate handler in turn (see the 
+ * WindowFingerprinting setting).
+ * 
+ * A fingerprint is a hash of the window's class, its title, the number and 
+ * classes of the components in the top two levels of its content pane, and
+ * the text of every label and button in the content pane, so that (for 
+ * example) message dialogs with the same title but different messages have 
+ * different fingerprints. If the remembered handler no longer recognises a window with that 
+ * fingerprint, the entry is discarded and the full search is used.
+ * 
+ * The index is saved in the TWS settings directory in a file whose name 
+ * depends on the jar files on the classpath, so each TWS build has its own 
+ * index.
+ */
+class WindowFingerprintIndex {
+
+    private static final int SAVE_INTERVAL_SECONDS = 60;
+
+    private static final AtomicLong hitCount = new AtomicLong();
+    private static final AtomicLong missCount = new AtomicLong();
+    private static final AtomicLong invalidationCount = new AtomicLong();
+
+    private final Map<String, WindowHandler> entries = new ConcurrentHashMap<>();
+    private final Map<WindowHandler, String> handlerKeys;
+    private final Path file;
+    private volatile boolean dirty;
+
+    /**
+     * Creates an index for the specified handlers, loading any entries saved
+     * in a previous session with the same TWS build.
+     * @param handlers
+     * the window handlers
+     * @param directory
+     * the directory in which the index is saved
+     */
+    WindowFingerprintIndex(List<WindowHandler> handlers, String directory) {
+        handlerKeys = WindowHandlerIndex.getHandlerKeys(handlers);
+        file = Paths.get(directory, "IBControllerFingerprints-" + getBuildKey() + ".txt");
+        load();
+
+        MyScheduledExecutorService.getInstance().scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                if (dirty) save();
+            }
+        }, SAVE_INTERVAL_SECONDS, SAVE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Finds the handler for a window event, using the fingerprint index if 
+     * possible and otherwise the supplied handler index.
+     * @param window
+     * the window
+     * @param eventID
+     * the WindowEvent id
+     * @param index
+     * the handler index to use if the fingerprint is not known
+     * @return
+     * the handler, or null if there is none
+     */
+    WindowHandler findHandler(Window window, int eventID, WindowHandlerIndex index) {
+        if (!index.hasCandidates(window, eventID)) return null;
+
+        String key = getFingerprint(window) + ":" + eventID;
+
+        WindowHandler handler = entries.get(key);
+        if (handler != null) {
+            if (handler.getHints().acceptsWindow(window) && 
+                    WindowHandlerMetrics.getInstance().filterEvent(handler, window, eventID) && 
+                    WindowHandlerMetrics.getInstance().recogniseWindow(handler, window)) {
+                hitCount.incrementAndGet();
+                return handler;
+            }
+            invalidationCount.incrementAndGet();
+            entries.remove(key);
+            dirty = true;
+        }
+
+        missCount.incrementAndGet();
+        handler = index.findHandler(window, eventID);
+        if (handler != null) {
+            entries.put(key, handler);
+            dirty = true;
+        }
+        return handler;
+    }
+
+    static Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new TreeMap<>();
+        stats.put("hits", hitCount.get());
+        stats.put("misses", missCount.get());
+        stats.put("invalidations", invalidationCount.get());
+        return stats;
+    }
+
+    /**
+     * Computes a window's structural fingerprint. This must be called on the 
+     * event dispatch thread.
+     */
+    static String getFingerprint(Window window) {
+        Container top = (window instanceof RootPaneContainer) ? ((RootPaneContainer) window).getContentPane() : window;
+
+        final Map<String, Integer> histogram = new TreeMap<>();
+        final int[] count = new int[1];
+        final StringBuilder texts = new StringBuilder();
+        ComponentTraversal.traverse(top, new ComponentTraversal.Visitor() {
+            @Override
+            public int visit(Component component, int depth) {
+                if (depth <= 2) {
+                    count[0]++;
+                    addToHistogram(histogram, component);
+                }
+                String text = getText(component);
+                if (text != null && !text.isEmpty()) texts.append('|').append(text);
+                return ComponentTraversal.CONTINUE;
+            }
+        });
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(window.getClass().getName()).append('|')
+            .append(SwingUtils.getWindowTitle(window)).append('|')
+            .append(count[0]);
+        for (Map.Entry<String, Integer> entry : histogram.entrySet()) {
+            sb.append('|').append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        sb.append(texts);
+        return hash(sb.toString());
+    }
+
+    private static String getText(Component component) {
+        if (component instanceof JLabel) return ((JLabel) component).getText();
+        if (component instanceof AbstractButton) return ((AbstractButton) component).getText();
+        return null;
+    }
+
+    private static void addToHistogram(Map<String, Integer> histogram, Component component) {
+        String name = component.getClass().getName();
+        Integer n = histogram.get(name);
+        histogram.put(name, (n == null) ? 1 : n + 1);
+    }
+
+    /*
+     * Identifies the TWS build from the names of the jar files on the 
+     * classpath, which include the TWS version number.
+     */
+    private static String getBuildKey() {
+        List<String> jars = new ArrayList<>();
+        for (String entry : System.getProperty("java.class.path", "").split(File.pathSeparator)) {
+            if (entry.endsWith(".jar")) jars.add(new File(entry).getName());
+        }
+        Collections.sort(jars);
+        return hash(jars.toString());
+    }
+
+    /*
+     * 64-bit FNV-1a hash, as a hex string.
+     */
+    private static String hash(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return String.format("%016x", h);
+    }
+
+    private void load() {
+        if (!Files.exists(file)) return;
+
+        Map<String, WindowHandler> handlersByKey = new HashMap<>();
+        for (Map.Entry<WindowHandler, String> entry : handlerKeys.entrySet()) handlersByKey.put(entry.getValue(), entry.getKey());
+
+        try {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] fields = line.split("\t");
+                if (fields.length != 2) throw new IOException("invalid line: " + line);
+                WindowHandler handler = handlersByKey.get(fields[1]);
+                if (handler != null) entries.put(fields[0], handler);
+            }
+            Utils.logToConsole("loaded " + entries.size() + " window fingerprints from " + file);
+        } catch (IOException e) {
+            Utils.logError("could not load window fingerprints from " + file + ": " + e.getMessage());
+            entries.clear();
+        }
+    }
+
+    private synchronized void save() {
+        dirty = false;
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                writer.write("# fingerprint:eventID\thandler");
+                writer.newLine();
+                for (Map.Entry<String, WindowHandler> entry : entries.entrySet()) {
+                    writer.write(entry.getKey() + "\t" + handlerKeys.get(entry.getValue()));
+                    writer.newLine();
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Utils.logError("could not save window fingerprints to " + file + ": " + e.getMessage());
+        }
+    }
+}
@@ -20,8 +20,26 @@ package ibcontroller;
 
 import java.awt.Window;
 
+/**
+ * Recognises and deals with a particular kind of TWS window.
+ * 
+ * Handlers for windows that IBController doesn't know about can be added 
+ * without modifying IBController: see WindowHandlerProvider.
+ */
 interface WindowHandler {
     boolean filterEvent(Window window, int eventId);
     void handleWindow(Window window, int eventID);
     boolean recogniseWindow(Window window);
+
+    /**
+     * Returns hints that TwsListener uses to avoid calling recogniseWindow()
+     * for windows and events that can't be of interest to this handler (see 
+     * WindowHandlerHints). Handlers that don't override this are considered
+     * for every window and event.
+     * @return
+     * the hints
+     */
+    default WindowHandlerHints getHints() {
+        return WindowHandlerHints.NONE;
+    }
 }
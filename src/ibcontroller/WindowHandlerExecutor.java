@@ -0,0 +1,96 @@
+// This file is part of the "IBController".
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2016 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBController is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBController is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBController.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package ibcontroller;
+
+import java.awt.Window;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Runs window handlers away from the event dispatch thread, so that a slow
+ * handler cannot freeze TWS's user interface while it works.
+ * 
+ * The tasks for any one window are run strictly one at a time, in the order
+ * in which they were submitted, so that a handler still sees the events for
+ * its window in the order they occurred. Tasks for different windows may run
+ * concurrently.
+ */
+class WindowHandlerExecutor {
+    private static final WindowHandlerExecutor instance = new WindowHandlerExecutor();
+
+    private final Map<Window, SerialQueue> queues = new WeakHashMap<>();
+
+    private WindowHandlerExecutor() {}
+
+    static WindowHandlerExecutor instance() {return instance;}
+
+    /**
+     * Queues a task for the specified window.
+     * @param window
+     * the window that the task relates to
+     * @param task
+     * the task to be run after any previously queued tasks for the same window
+     */
+    void execute(Window window, Runnable task) {
+        SerialQueue queue;
+        synchronized (queues) {
+            queue = queues.get(window);
+            if (queue == null) {
+                queue = new SerialQueue();
+                queues.put(window, queue);
+            }
+        }
+        queue.add(task);
+    }
+
+    private static class SerialQueue implements Runnable {
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        private boolean running;
+
+        void add(Runnable task) {
+            synchronized (this) {
+                tasks.add(task);
+                if (running) return;
+                running = true;
+            }
+            MyCachedThreadPool.getInstance().execute(this);
+        }
+
+        @Override
+        public void run() {
+            for (;;) {
+                Runnable task;
+                synchronized (this) {
+                    task = tasks.poll();
+                    if (task == null) {
+                        running = false;
+                        return;
+                    }
+                }
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    Utils.logException(e);
+                }
+            }
+        }
+    }
+}
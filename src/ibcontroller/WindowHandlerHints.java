@@ -0,0 +1,236 @@
+// This file is part of the "IBController".
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2016 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBController is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBController is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBController.  If not, see <http://www.gnu.org/licenses/>.
+
+package ibcontroller;
+
+import java.awt.Window;
+import java.awt.event.WindowEvent;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.swing.JDialog;
+import javax.swing.JFrame;
+
+/**
+ * Describes, cheaply, which windows and events a WindowHandler can possibly 
+ * be interested in, so that TwsListener need only call the handler's 
+ * (potentially expensive) recogniseWindow() method for likely candidates.
+ * 
+ * Hints are only a pre-filter: they must never exclude a window that the 
+ * handler would recognise, but they may admit windows that it won't. A 
+ * handler with no hints (NONE) is considered for every window and event.
+ * 
+ * Hints also indicate whether the handler must run on the Swing event 
+ * dispatch thread (see the WindowHandlerExecution setting), and whether its
+ * position in the handler list must be preserved when handlers are 
+ * reordered (see the WindowHandlerOrdering setting).
+ * 
+ * Hints are immutable: each of the with...() and on...() methods returns a
+ * new object.
+ */
+final class WindowHandlerHints {
+
+    private static final int ALL_EVENTS = -1;
+
+    /**
+     * Hints that admit every window and event.
+     */
+    static final WindowHandlerHints NONE = new WindowHandlerHints(Window.class);
+
+    private final Class<? extends Window> windowClass;
+    private int eventMask = ALL_EVENTS;
+    private List<String> exactTitles = Collections.emptyList();
+    private List<String> titlePrefixes = Collections.emptyList();
+    private List<String> titleSubstrings = Collections.emptyList();
+    private boolean requiresEventDispatchThread;
+    private boolean pinned;
+
+    private WindowHandlerHints(Class<? extends Window> windowClass) {
+        this.windowClass = windowClass;
+    }
+
+    private WindowHandlerHints(WindowHandlerHints other) {
+        windowClass = other.windowClass;
+        eventMask = other.eventMask;
+        exactTitles = other.exactTitles;
+        titlePrefixes = other.titlePrefixes;
+        titleSubstrings = other.titleSubstrings;
+        requiresEventDispatchThread = other.requiresEventDispatchThread;
+        pinned = other.pinned;
+    }
+
+    /**
+     * Returns hints for a handler that only recognises JFrames.
+     */
+    static WindowHandlerHints forFrames() {
+        return new WindowHandlerHints(JFrame.class);
+    }
+
+    /**
+     * Returns hints for a handler that only recognises JDialogs.
+     */
+    static WindowHandlerHints forDialogs() {
+        return new WindowHandlerHints(JDialog.class);
+    }
+
+    /**
+     * Returns hints for a handler that may recognise any kind of window.
+     */
+    static WindowHandlerHints forAnyWindow() {
+        return NONE;
+    }
+
+    /**
+     * Restricts the hints to the specified window events. The handler's 
+     * filterEvent() method is still called for these events.
+     * @param eventIDs
+     * the WindowEvent ids
+     */
+    WindowHandlerHints onEvents(int... eventIDs) {
+        WindowHandlerHints hints = new WindowHandlerHints(this);
+        hints.eventMask = 0;
+        for (int eventID : eventIDs) hints.eventMask |= eventBit(eventID);
+        return hints;
+    }
+
+    /**
+     * Restricts the hints to windows with one of the specified titles.
+     */
+    WindowHandlerHints withTitles(String... titles) {
+        WindowHandlerHints hints = new WindowHandlerHints(this);
+        hints.exactTitles = concat(exactTitles, titles);
+        return hints;
+    }
+
+    /**
+     * Restricts the hints to windows whose titles start with one of the 
+     * specified strings.
+     */
+    WindowHandlerHints withTitlePrefixes(String... prefixes) {
+        WindowHandlerHints hints = new WindowHandlerHints(this);
+        hints.titlePrefixes = concat(titlePrefixes, prefixes);
+        return hints;
+    }
+
+    /**
+     * Restricts the hints to windows whose titles contain one of the 
+     * specified strings.
+     */
+    WindowHandlerHints withTitlesContaining(String... substrings) {
+        WindowHandlerHints hints = new WindowHandlerHints(this);
+        hints.titleSubstrings = concat(titleSubstrings, substrings);
+        return hints;
+    }
+
+    /**
+     * Indicates that the handler's handleWindow() method must be called 
+     * synchronously on the event dispatch thread, for example because it 
+     * manipulates Swing components directly or must act before the event
+     * completes.
+     */
+    WindowHandlerHints onEventDispatchThread() {
+        WindowHandlerHints hints = new WindowHandlerHints(this);
+        hints.requiresEventDispatchThread = true;
+        return hints;
+    }
+
+    boolean requiresEventDispatchThread() {
+        return requiresEventDispatchThread;
+    }
+
+    /**
+     * Indicates that the handler's position in the handler list matters for
+     * correctness, for example because it could also recognise windows that 
+     * earlier handlers deal with. No handler is ever moved past a pinned 
+     * handler when the handlers are reordered.
+     */
+    WindowHandlerHints pinned() {
+        WindowHandlerHints hints = new WindowHandlerHints(this);
+        hints.pinned = true;
+        return hints;
+    }
+
+    boolean isPinned() {
+        return pinned;
+    }
+
+    Class<? extends Window> getWindowClass() {
+        return windowClass;
+    }
+
+    boolean acceptsEvent(int eventID) {
+        return eventMask == ALL_EVENTS || (eventMask & eventBit(eventID)) != 0;
+    }
+
+    boolean acceptsWindow(Window window) {
+        return windowClass.isInstance(window);
+    }
+
+    /**
+     * Indicates whether the hints restrict window titles at all.
+     */
+    boolean hasTitleHints() {
+        return !(exactTitles.isEmpty() && titlePrefixes.isEmpty() && titleSubstrings.isEmpty());
+    }
+
+    /**
+     * Indicates whether the only title restrictions are exact titles, in 
+     * which case the handler can be indexed by title.
+     */
+    boolean hasOnlyExactTitles() {
+        return !exactTitles.isEmpty() && titlePrefixes.isEmpty() && titleSubstrings.isEmpty();
+    }
+
+    List<String> getExactTitles() {
+        return exactTitles;
+    }
+
+    /**
+     * Indicates whether a title satisfies the title restrictions.
+     * @param title
+     * the window title, which may be null
+     * @return
+     * true if there are no title restrictions or the title satisfies one of 
+     * them; otherwise false
+     */
+    boolean acceptsTitle(String title) {
+        if (!hasTitleHints()) return true;
+        if (title == null) return false;
+        if (exactTitles.contains(title)) return true;
+        for (String prefix : titlePrefixes) {
+            if (title.startsWith(prefix)) return true;
+        }
+        for (String substring : titleSubstrings) {
+            if (title.contains(substring)) return true;
+        }
+        return false;
+    }
+
+    private static int eventBit(int eventID) {
+        if (eventID < WindowEvent.WINDOW_FIRST || eventID > WindowEvent.WINDOW_LAST) return 0;
+        return 1 << (eventID - WindowEvent.WINDOW_FIRST);
+    }
+
+    private static List<String> concat(List<String> list, String[] values) {
+        List<String> result = new ArrayList<>(list);
+        result.addAll(Arrays.asList(values));
+        return Collections.unmodifiableList(result);
+    }
+
+}
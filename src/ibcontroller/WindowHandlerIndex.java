@@ -0,0 +1,219 @@
+// This file is part of the "IBController".
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2016 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBController is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBController is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBController.  If not, see <http://www.gnu.org/licenses/>.
+
+package ibcontroller;
+
+import java.awt.Window;
+import java.awt.event.WindowEvent;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.swing.JDialog;
+import javax.swing.JFrame;
+
+/**
+ * Finds the WindowHandler (if any) for a window event, using the handlers' 
+ * WindowHandlerHints to avoid calling recogniseWindow() on handlers that 
+ * cannot be interested.
+ * 
+ * Handlers are grouped by event id and kind of window (JFrame, JDialog or 
+ * other). Within each group, handlers whose hints specify only exact titles
+ * are indexed by title; the rest are checked against their title hints (if 
+ * any) before filterEvent() and recogniseWindow() are called. Handlers are
+ * always tried in the order in which they were supplied, so the result is
+ * the same as trying each handler in turn.
+ * 
+ * The results of recogniseWindow() are cached in the WindowRecognitionCache.
+ */
+final class WindowHandlerIndex {
+
+    private static final int EVENT_COUNT = WindowEvent.WINDOW_LAST - WindowEvent.WINDOW_FIRST + 1;
+
+    private static final int KIND_FRAME = 0;
+    private static final int KIND_DIALOG = 1;
+    private static final int KIND_OTHER = 2;
+    private static final int KIND_COUNT = 3;
+
+    private final List<WindowHandler> handlers;
+    private final Bucket[][] buckets = new Bucket[EVENT_COUNT][KIND_COUNT];
+
+    WindowHandlerIndex(List<WindowHandler> handlers) {
+        this.handlers = handlers;
+        for (int e = 0; e < EVENT_COUNT; e++) {
+            for (int k = 0; k < KIND_COUNT; k++) buckets[e][k] = new Bucket();
+        }
+
+        for (int i = 0; i < handlers.size(); i++) {
+            Entry entry = new Entry(handlers.get(i), i);
+            for (int e = 0; e < EVENT_COUNT; e++) {
+                if (!entry.hints.acceptsEvent(WindowEvent.WINDOW_FIRST + e)) continue;
+                for (int k = 0; k < KIND_COUNT; k++) {
+                    if (acceptsKind(entry.hints.getWindowClass(), k)) buckets[e][k].add(entry);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the first handler that accepts the event and recognises the window.
+     * @param window
+     * the window
+     * @param eventID
+     * the WindowEvent id
+     * @return
+     * the handler, or null if there is none
+     */
+    WindowHandler findHandler(Window window, int eventID) {
+        if (eventID < WindowEvent.WINDOW_FIRST || eventID > WindowEvent.WINDOW_LAST) return findHandlerLinearly(window, eventID);
+
+        Bucket bucket = buckets[eventID - WindowEvent.WINDOW_FIRST][kindOf(window)];
+        String title = SwingUtils.getWindowTitle(window);
+
+        List<Entry> titled = (title == null) ? null : bucket.byTitle.get(title);
+        if (titled == null) titled = Collections.emptyList();
+        List<Entry> others = bucket.others;
+
+        // merge the two lists, which are both in handler order
+        int i = 0;
+        int j = 0;
+        while (i < titled.size() || j < others.size()) {
+            Entry entry;
+            if (j == others.size() || (i < titled.size() && titled.get(i).order < others.get(j).order)) {
+                entry = titled.get(i++);
+            } else {
+                entry = others.get(j++);
+                if (!entry.hints.acceptsTitle(title)) continue;
+            }
+            if (entry.accepts(window, eventID)) return entry.handler;
+        }
+        return null;
+    }
+
+    /**
+     * Indicates whether any handler could possibly deal with the event, 
+     * without calling any handler.
+     * @param window
+     * the window
+     * @param eventID
+     * the WindowEvent id
+     * @return
+     * false if no handler can deal with the event; otherwise true
+     */
+    boolean hasCandidates(Window window, int eventID) {
+        if (eventID < WindowEvent.WINDOW_FIRST || eventID > WindowEvent.WINDOW_LAST) return true;
+        Bucket bucket = buckets[eventID - WindowEvent.WINDOW_FIRST][kindOf(window)];
+        return !bucket.others.isEmpty() || !bucket.byTitle.isEmpty();
+    }
+
+    /**
+     * Returns the name of the handler's class, or for a handler supplied by a
+     * WindowHandlerProvider, the name of the provider's class.
+     */
+    static String getHandlerName(WindowHandler handler) {
+        if (handler instanceof ProvidedWindowHandler) return ((ProvidedWindowHandler) handler).getName();
+        return handler.getClass().getName();
+    }
+
+    /**
+     * Returns a key for each handler that identifies it from one session to
+     * the next, for use in files that record information about handlers.
+     * @param handlers
+     * the handlers
+     * @return
+     * a map of handler to key
+     */
+    static Map<WindowHandler, String> getHandlerKeys(List<WindowHandler> handlers) {
+        Map<WindowHandler, String> keys = new IdentityHashMap<>();
+        Map<String, Integer> occurrences = new HashMap<>();
+        for (WindowHandler handler : handlers) {
+            // there may be several handlers of the same class (eg window rules)
+            String key = getHandlerName(handler);
+            Integer n = occurrences.get(key);
+            occurrences.put(key, (n == null) ? 1 : n + 1);
+            keys.put(handler, (n == null) ? key : key + "#" + n);
+        }
+        return keys;
+    }
+
+    private WindowHandler findHandlerLinearly(Window window, int eventID) {
+        for (WindowHandler wh : handlers) {
+            if (WindowHandlerMetrics.getInstance().filterEvent(wh, window, eventID) && 
+                    WindowHandlerMetrics.getInstance().recogniseWindow(wh, window)) return wh;
+        }
+        return null;
+    }
+
+    private static boolean acceptsKind(Class<? extends Window> windowClass, int kind) {
+        switch (kind) {
+            case KIND_FRAME:
+                return windowClass.isAssignableFrom(JFrame.class) || JFrame.class.isAssignableFrom(windowClass);
+            case KIND_DIALOG:
+                return windowClass.isAssignableFrom(JDialog.class) || JDialog.class.isAssignableFrom(windowClass);
+            default:
+                return !JFrame.class.isAssignableFrom(windowClass) && !JDialog.class.isAssignableFrom(windowClass);
+        }
+    }
+
+    private static int kindOf(Window window) {
+        if (window instanceof JFrame) return KIND_FRAME;
+        if (window instanceof JDialog) return KIND_DIALOG;
+        return KIND_OTHER;
+    }
+
+    private static final class Bucket {
+        final Map<String, List<Entry>> byTitle = new HashMap<>();
+        final List<Entry> others = new ArrayList<>();
+
+        void add(Entry entry) {
+            if (!entry.hints.hasOnlyExactTitles()) {
+                others.add(entry);
+                return;
+            }
+            for (String title : entry.hints.getExactTitles()) {
+                List<Entry> entries = byTitle.get(title);
+                if (entries == null) {
+                    entries = new ArrayList<>();
+                    byTitle.put(title, entries);
+                }
+                if (!entries.contains(entry)) entries.add(entry);
+            }
+        }
+    }
+
+    private static final class Entry {
+        final WindowHandler handler;
+        final WindowHandlerHints hints;
+        final int order;
+
+        Entry(WindowHandler handler, int order) {
+            this.handler = handler;
+            this.hints = handler.getHints();
+            this.order = order;
+        }
+
+        boolean accepts(Window window, int eventID) {
+            return hints.acceptsWindow(window) && 
+                    WindowHandlerMetrics.getInstance().filterEvent(handler, window, eventID) && 
+                    WindowRecognitionCache.getInstance().recognises(handler, window);
+        }
+    }
+
+}
@@ -0,0 +1,180 @@
+// This file is part of the "IBController".
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2016 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBController is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBController is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBController.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package ibcontroller;
+
+import java.awt.Window;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the time taken by each window handler's filterEvent(), 
+ * recogniseWindow() and handleWindow() methods, which mostly run on the 
+ * event dispatch thread. All calls to these methods should be made through 
+ * this class.
+ * 
+ * The metrics are returned by the WINDOWSTATS command, included in the 
+ * DIAGNOSTICS command's output, and can be logged periodically (see the 
+ * LogWindowHandlerMetrics setting).
+ */
+class WindowHandlerMetrics {
+
+    private static final WindowHandlerMetrics instance = new WindowHandlerMetrics();
+
+    private static final class HandlerMetrics {
+        final String name;
+        final LatencyHistogram filterEvent = new LatencyHistogram();
+        final LatencyHistogram recogniseWindow = new LatencyHistogram();
+        final LatencyHistogram handleWindow = new LatencyHistogram();
+        final AtomicLong matches = new AtomicLong();
+
+        HandlerMetrics(String name) {
+            this.name = name;
+        }
+    }
+
+    private final ConcurrentMap<WindowHandler, HandlerMetrics> metrics = new ConcurrentHashMap<>();
+
+    private WindowHandlerMetrics() {}
+
+    static WindowHandlerMetrics getInstance() {return instance;}
+
+    /**
+     * Registers the handlers, so that they are reported under distinct names.
+     * @param handlers
+     * the window handlers
+     */
+    void register(List<WindowHandler> handlers) {
+        for (Map.Entry<WindowHandler, String> entry : WindowHandlerIndex.getHandlerKeys(handlers).entrySet()) {
+            metrics.putIfAbsent(entry.getKey(), new HandlerMetrics(entry.getValue().replaceFirst("^ibcontroller\\.", "")));
+        }
+    }
+
+    /**
+     * Logs the metrics at the interval specified by the 
+     * LogWindowHandlerMetrics setting, if any.
+     */
+    void startLogging() {
+        int interval = Settings.settings().getInt("LogWindowHandlerMetrics", 0);
+        if (interval <= 0) return;
+        MyScheduledExecutorService.getInstance().scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                logStatistics();
+            }
+        }, interval, interval, TimeUnit.SECONDS);
+    }
+
+    boolean filterEvent(WindowHandler handler, Window window, int eventID) {
+        long start = System.nanoTime();
+        try {
+            return handler.filterEvent(window, eventID);
+        } finally {
+            getMetrics(handler).filterEvent.record(System.nanoTime() - start);
+        }
+    }
+
+    boolean recogniseWindow(WindowHandler handler, Window window) {
+        long start = System.nanoTime();
+        boolean recognised = false;
+        try {
+            recognised = handler.recogniseWindow(window);
+            return recognised;
+        } finally {
+            HandlerMetrics m = getMetrics(handler);
+            m.recogniseWindow.record(System.nanoTime() - start);
+            if (recognised) m.matches.incrementAndGet();
+        }
+    }
+
+    void handleWindow(WindowHandler handler, Window window, int eventID) {
+        long start = System.nanoTime();
+        try {
+            handler.handleWindow(window, eventID);
+        } finally {
+            getMetrics(handler).handleWindow.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Returns the number of times the handler's recogniseWindow() method has
+     * been called.
+     */
+    long getRecognitionCount(WindowHandler handler) {
+        return getMetrics(handler).recogniseWindow.getCount();
+    }
+
+    /**
+     * Returns the number of times the handler's recogniseWindow() method has
+     * returned true.
+     */
+    long getMatchCount(WindowHandler handler) {
+        return getMetrics(handler).matches.get();
+    }
+
+    /**
+     * Returns the total time spent in the handler's recogniseWindow() method.
+     */
+    long getRecognitionNanos(WindowHandler handler) {
+        return getMetrics(handler).recogniseWindow.getTotalNanos();
+    }
+
+    /**
+     * Returns the metrics for each handler that has been called.
+     * @return
+     * a map of handler name to metrics
+     */
+    Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new TreeMap<>();
+        for (HandlerMetrics m : metrics.values()) {
+            if (m.filterEvent.getCount() == 0) continue;
+            Map<String, Object> handlerStatistics = new TreeMap<>();
+            handlerStatistics.put("filterEvent", m.filterEvent.getSummary());
+            Map<String, Object> recognise = m.recogniseWindow.getSummary();
+            recognise.put("matches", m.matches.get());
+            handlerStatistics.put("recogniseWindow", recognise);
+            handlerStatistics.put("handleWindow", m.handleWindow.getSummary());
+            statistics.put(m.name, handlerStatistics);
+        }
+        return statistics;
+    }
+
+    void logStatistics() {
+        Map<String, Object> statistics = getStatistics();
+        if (statistics.isEmpty()) return;
+        Utils.logToConsole("window handler metrics (times in microseconds):");
+        for (Map.Entry<String, Object> entry : statistics.entrySet()) {
+            Utils.logRawToConsole("    " + entry.getKey() + " " + Json.toJson(entry.getValue()));
+        }
+    }
+
+    private HandlerMetrics getMetrics(WindowHandler handler) {
+        HandlerMetrics m = metrics.get(handler);
+        if (m == null) {
+            metrics.putIfAbsent(handler, new HandlerMetrics(WindowHandlerIndex.getHandlerName(handler).replaceFirst("^ibcontroller\\.", "")));
+            m = metrics.get(handler);
+        }
+        return m;
+    }
+}
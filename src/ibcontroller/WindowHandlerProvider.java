@@ -0,0 +1,131 @@
+// This file is part of the "IBController".
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2016 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBController is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBController is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBController.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package ibcontroller;
+
+import java.awt.Window;
+
+/**
+ * Provides a window handler from outside IBController, so that sites can 
+ * deal with TWS windows that IBController doesn't know about without 
+ * modifying IBController.
+ * 
+ * Providers are found by listing the implementing classes in a file called 
+ * META-INF/services/ibcontroller.WindowHandlerProvider in a jar on the 
+ * classpath (see java.util.ServiceLoader). Implementations must have a 
+ * public no-argument constructor, which should do as little as possible: 
+ * the handler itself is only created if it applies to the current mode 
+ * (TWS or Gateway), and not until the first event that it is interested in 
+ * occurs.
+ * 
+ * Provided handlers are tried after IBController's own handlers, and in the 
+ * order in which they are found on the classpath.
+ */
+public interface WindowHandlerProvider {
+
+    /**
+     * Indicates that the handler applies when running TWS.
+     */
+    int TWS = 1;
+
+    /**
+     * Indicates that the handler applies when running the Gateway.
+     */
+    int GATEWAY = 2;
+
+    /**
+     * Indicates that the handler applies when running either TWS or the 
+     * Gateway.
+     */
+    int ANY = TWS | GATEWAY;
+
+    /**
+     * Returns the modes in which the handler applies.
+     * @return
+     * TWS, GATEWAY or ANY
+     */
+    int getModes();
+
+    /**
+     * Returns the window events that the handler is interested in. The 
+     * handler's filterEvent() method is still called for these events.
+     * @return
+     * the WindowEvent ids, or an empty array if the handler may be 
+     * interested in any window event
+     */
+    int[] getEventIDs();
+
+    /**
+     * Indicates whether the handler's handleWindow() method must be called 
+     * on the event dispatch thread, even when the WindowHandlerExecution 
+     * setting is 'worker'. Handlers that manipulate Swing components 
+     * directly must return true, which is the default.
+     * @return
+     * true if the handler must run on the event dispatch thread; false if 
+     * it may run on a background thread
+     */
+    default boolean requiresEventDispatchThread() {
+        return true;
+    }
+
+    /**
+     * Creates the handler. This is called at most once, on the event dispatch
+     * thread.
+     * @return
+     * the handler
+     */
+    Handler createHandler();
+
+    /**
+     * Recognises and deals with a particular kind of TWS window.
+     */
+    interface Handler {
+
+        /**
+         * Indicates whether the handler is interested in an event for a window
+         * that it may recognise.
+         * @param window
+         * the window
+         * @param eventID
+         * the WindowEvent id
+         * @return
+         * true if the handler is interested in the event; otherwise false
+         */
+        boolean filterEvent(Window window, int eventID);
+
+        /**
+         * Deals with an event for a window that the handler has recognised.
+         * @param window
+         * the window
+         * @param eventID
+         * the WindowEvent id
+         */
+        void handleWindow(Window window, int eventID);
+
+        /**
+         * Indicates whether the handler recognises a window.
+         * @param window
+         * the window
+         * @return
+         * true if the handler deals with this window; otherwise false
+         */
+        boolean recogniseWindow(Window window);
+    }
+
+}
@@ -0,0 +1,139 @@
+// This file is part of the "IBController".
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2016 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBController is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBController is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBController.  If not, see <http://www.gnu.org/licenses/>.
+
+package ibcontroller;
+
+import java.awt.Window;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers which handlers have recognised each window, so that the repeated events fired by the same window (for example each 
+ * time the main window is activated) don't each repeat the component tree 
+ * traversals that recognition often involves.
+ * 
+ * Windows are held weakly, so the cache never keeps a closed window alive.
+ * A window's results are discarded when its title changes, since most 
+ * handlers recognise windows by title.
+ * 
+ * Only positive results are cached. Some handlers recognise windows by 
+ * their contents, which may still be being built when the window is first 
+ * opened or may change later without any change of title, so a handler 
+ * that doesn't recognise a window is always asked again.
+ */
+class WindowRecognitionCache {
+
+    private static final WindowRecognitionCache instance = new WindowRecognitionCache();
+
+    private final Map<Window, Set<WindowHandler>> results = new WeakHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private final PropertyChangeListener titleListener = new PropertyChangeListener() {
+        @Override
+        public void propertyChange(PropertyChangeEvent evt) {
+            invalidate((Window) evt.getSource());
+        }
+    };
+
+    private WindowRecognitionCache() {}
+
+    static WindowRecognitionCache getInstance() {return instance;}
+
+    /**
+     * Determines whether a handler recognises a window, using the cached
+     * result if there is one.
+     * @param handler
+     * the handler
+     * @param window
+     * the window
+     * @return
+     * true if the handler recognises the window; otherwise false
+     */
+    boolean recognises(WindowHandler handler, Window window) {
+        if (lookup(handler, window)) {
+            hits.incrementAndGet();
+            return true;
+        }
+
+        misses.incrementAndGet();
+        boolean recognised = WindowHandlerMetrics.getInstance().recogniseWindow(handler, window);
+        if (recognised) store(handler, window);
+        return recognised;
+    }
+
+    /**
+     * Returns the cache's activity counters.
+     * @return
+     * the counters
+     */
+    Map<String, Object> getStatistics() {
+        long h = hits.get();
+        long m = misses.get();
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("hits", h);
+        statistics.put("misses", m);
+        statistics.put("hitRatio", (h + m == 0) ? 0.0 : (double) h / (h + m));
+        statistics.put("invalidations", invalidations.get());
+        synchronized (this) {
+            statistics.put("windows", results.size());
+        }
+        return statistics;
+    }
+
+    private synchronized boolean lookup(WindowHandler handler, Window window) {
+        Set<WindowHandler> windowResults = results.get(window);
+        return windowResults != null && windowResults.contains(handler);
+    }
+
+    private void store(WindowHandler handler, Window window) {
+        boolean isNewWindow;
+        synchronized (this) {
+            Set<WindowHandler> windowResults = results.get(window);
+            isNewWindow = (windowResults == null);
+            if (isNewWindow) {
+                windowResults = Collections.newSetFromMap(new IdentityHashMap<WindowHandler, Boolean>());
+                results.put(window, windowResults);
+            }
+            windowResults.add(handler);
+        }
+        if (isNewWindow) {
+            // the listener doesn't refer to the window, so it doesn't 
+            // prevent the window being garbage collected
+            window.removePropertyChangeListener("title", titleListener);
+            window.addPropertyChangeListener("title", titleListener);
+        }
+    }
+
+    private void invalidate(Window window) {
+        synchronized (this) {
+            if (results.remove(window) == null) return;
+        }
+        invalidations.incrementAndGet();
+    }
+
+}